@@ -6,6 +6,9 @@ public interface Constants {
 	String FAST_REST_SESSION = "FAST_REST_SESSION";
 	String HTTP_LINE_SEPARATOR = "\r\n";
 	int BUFFER_SIZE = 1024;
+	int READ_BUFFER_SIZE = 16 * 1024;
+	int WRITE_BUFFER_SIZE = 16 * 1024;// 响应缓冲池中每个直接缓冲的大小
+	int MAX_HEADER_SIZE = 64 * 1024;// 请求行加请求头的最大字节数
 	long SESSION_CHECK_FIXED_RATE = 3600000L;// session检测间隔（毫秒）
 
 }
@@ -20,6 +20,7 @@ import com.zhukai.framework.fast.rest.config.DataSource;
 import com.zhukai.framework.fast.rest.config.ServerConfig;
 import com.zhukai.framework.fast.rest.event.ListenerTrigger;
 import com.zhukai.framework.fast.rest.exception.SetupInitException;
+import com.zhukai.framework.fast.rest.handle.RouteTable;
 import com.zhukai.framework.fast.rest.jdbc.DBConnectionPool;
 import com.zhukai.framework.fast.rest.jdbc.data.jpa.JpaUtil;
 import com.zhukai.framework.fast.rest.schedule.TaskTrigger;
@@ -39,8 +40,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.stream.IntStream;
 
 public class Setup {
 	private static final Logger logger = LoggerFactory.getLogger(Setup.class);
@@ -49,11 +49,11 @@ public class Setup {
 	private static List<Method> exceptionHandlerMethods = new ArrayList<>();
 	private static List<Method> aopMethods = new ArrayList<>();
 
-	private static Map<String, Method> webMethods = new HashMap<>();
+	private static RouteTable routeTable = new RouteTable();
 	private static Map<Method, Set<Method>> methodInterceptors = new HashMap<>();
 
 	private static DataSource dataSource;
-	private static List<Class> scanClasses;
+	private static List<Class<?>> scanClasses;
 
 	static void init() throws SetupInitException {
 		try {
@@ -101,44 +101,94 @@ public class Setup {
 	}
 
 	private static void scanComponent() throws Throwable {
-		Connection conn = dataSource != null ? DBConnectionPool.getConnection() : null;
 		String packageName = FastRestApplication.getRunClass().getPackage().getName();
-		scanClasses = PackageUtil.getAllClasses(packageName);
-		for (Class componentClass : scanClasses) {
-			if (componentClass.isAnnotation()) {
-				continue;
-			} else if (componentClass.isAnnotationPresent(RestController.class)) {
+		scanClasses = PackageUtil.getAnnotatedClasses(packageName, Component.class, Entity.class, Configure.class);
+		List<Class<?>> entityClasses = new ArrayList<>();
+		for (Class<?> scanClass : scanClasses) {
+			if (scanClass.isAnnotationPresent(Entity.class)) {
+				entityClasses.add(scanClass);
+			}
+		}
+		checkDatabase(entityClasses);
+		// 注册名按扫描顺序先算好，重名时只注册扫描顺序中的第一个类，并行注册的结果与线程调度无关
+		int size = scanClasses.size();
+		String[] registerNames = new String[size];
+		String[] componentNames = new String[size];
+		boolean[] configures = new boolean[size];
+		Map<String, Class<?>> registeredComponents = new HashMap<>();
+		Map<String, Class<?>> registeredConfigures = new HashMap<>();
+		for (int i = 0; i < size; i++) {
+			Class<?> scanClass = scanClasses.get(i);
+			registerNames[i] = ReflectUtil.getComponentValue(scanClass);
+			if (registerNames[i] != null) {
+				String componentName = registerNames[i].equals("") ? scanClass.getName() : registerNames[i];
+				componentNames[i] = checkRegisterName(registeredComponents, componentName, scanClass) ? componentName : null;
+			}
+			if (!scanClass.isAnnotationPresent(RestController.class) && !scanClass.isAnnotationPresent(Entity.class) && scanClass.isAnnotationPresent(Configure.class)) {
+				configures[i] = checkRegisterName(registeredConfigures, getConfigureRegisterName(scanClass), scanClass);
+			}
+		}
+		// 组件和配置的注册互不依赖，并行进行
+		IntStream.range(0, size).parallel().forEach(i -> registerScanClass(scanClasses.get(i), componentNames[i], configures[i]));
+		// 路由、切面等方法、计划任务和事件监听按扫描顺序注册，同路径的路由覆盖顺序不变
+		for (int i = 0; i < size; i++) {
+			Class<?> componentClass = scanClasses.get(i);
+			if (componentClass.isAnnotationPresent(RestController.class)) {
 				addWebMethod(componentClass);
-			} else if (componentClass.isAnnotationPresent(Entity.class)) {
-				checkDatabase(componentClass, conn);
-			} else if (componentClass.isAnnotationPresent(Configure.class)) {
-				registerConfigureBean(componentClass);
 			}
-			String registerName = ReflectUtil.getComponentValue(componentClass);
-			if (registerName != null) {
-				registerComponentBean(componentClass, registerName);
-				Method[] methods = componentClass.getMethods();
-				for (Method method : methods) {
-					if (method.isAnnotationPresent(ExceptionHandler.class)) {
-						exceptionHandlerMethods.add(method);
-					} else if (method.isAnnotationPresent(Initialize.class)) {
-						initMethods.add(method);
-					} else if (method.isAnnotationPresent(Around.class)) {
-						aopMethods.add(method);
-					} else if (method.isAnnotationPresent(Scheduled.class)) {
-						TaskTrigger.registerTask(method);
-					} else if (method.isAnnotationPresent(EventHandle.class)) {
-						ListenerTrigger.registerListener(method.getAnnotation(EventHandle.class).value(), method);
-					}
-				}
+			if (registerNames[i] != null) {
+				addComponentMethods(componentClass);
 			}
 		}
-		if (conn != null) {
-			DBConnectionPool.freeConnection(conn);
+	}
+
+	/**
+	 * @return 注册名没有被扫描顺序中前面的类使用过
+	 */
+	private static boolean checkRegisterName(Map<String, Class<?>> registered, String registerName, Class<?> scanClass) {
+		Class<?> first = registered.putIfAbsent(registerName, scanClass);
+		if (first != null) {
+			logger.warn("Register name {} of {} is already used by {}, ignored", registerName, scanClass.getName(), first.getName());
+			return false;
 		}
+		return true;
 	}
 
-	private static final Pattern webMethodPattern = Pattern.compile("\\{.*?}");
+	/**
+	 * @param componentName
+	 *            组件的注册名，不是组件或重名时为null
+	 * @param configure
+	 *            是否注册为配置
+	 */
+	private static void registerScanClass(Class<?> scanClass, String componentName, boolean configure) {
+		try {
+			if (configure) {
+				registerConfigureBean(scanClass);
+			}
+			if (componentName != null) {
+				registerComponentBean(scanClass, componentName);
+			}
+		} catch (Throwable throwable) {
+			throw new IllegalStateException("Register " + scanClass.getName() + " fail", throwable);
+		}
+	}
+
+	private static void addComponentMethods(Class<?> componentClass) {
+		Method[] methods = componentClass.getMethods();
+		for (Method method : methods) {
+			if (method.isAnnotationPresent(ExceptionHandler.class)) {
+				exceptionHandlerMethods.add(method);
+			} else if (method.isAnnotationPresent(Initialize.class)) {
+				initMethods.add(method);
+			} else if (method.isAnnotationPresent(Around.class)) {
+				aopMethods.add(method);
+			} else if (method.isAnnotationPresent(Scheduled.class)) {
+				TaskTrigger.registerTask(method);
+			} else if (method.isAnnotationPresent(EventHandle.class)) {
+				ListenerTrigger.registerListener(method.getAnnotation(EventHandle.class).value(), method);
+			}
+		}
+	}
 
 	private static void addWebMethod(Class webClass) {
 		String webPath = "";
@@ -148,13 +198,12 @@ public class Setup {
 		Method[] methods = webClass.getMethods();
 		for (Method method : methods) {
 			if (method.isAnnotationPresent(RequestMapping.class)) {
-				String methodPath = method.getAnnotation(RequestMapping.class).value();
-				logger.info("Useful web method: {}{}", webPath, methodPath);
-				Matcher matcher = webMethodPattern.matcher(methodPath);
-				if (matcher.find()) {
-					methodPath = methodPath.replaceAll("\\{[^}]*}", "([^/]+)");
+				RequestMapping requestMapping = method.getAnnotation(RequestMapping.class);
+				logger.info("Useful web method: {}{}", webPath, requestMapping.value());
+				Method replaced = routeTable.add(webPath + requestMapping.value(), requestMapping.method(), method);
+				if (replaced != null) {
+					logger.warn("Web method {} is replaced by {}", replaced, method);
 				}
-				webMethods.put(webPath + methodPath, method);
 			}
 		}
 	}
@@ -190,9 +239,14 @@ public class Setup {
 		ComponentBeanFactory.getInstance().registerBean(componentBean);
 	}
 
+	private static String getConfigureRegisterName(Class<?> beanClass) {
+		Configure configure = beanClass.getAnnotation(Configure.class);
+		return configure.value().equals("") ? beanClass.getName() : configure.value();
+	}
+
 	private static void registerConfigureBean(Class beanClass) {
 		Configure configure = (Configure) beanClass.getAnnotation(Configure.class);
-		String registerName = configure.value().equals("") ? beanClass.getName() : configure.value();
+		String registerName = getConfigureRegisterName(beanClass);
 		String prefix = configure.prefix();
 		String propertiesName = configure.properties();
 		ConfigureBean configureBean = new ConfigureBean();
@@ -204,18 +258,36 @@ public class Setup {
 		ConfigureBeanFactory.getInstance().registerBean(configureBean);
 	}
 
-	private static void checkDatabase(Class entityClass, Connection conn) throws SQLException {
-		if (conn == null) {
+	/**
+	 * 一次查询取得所有已存在的表，再创建缺少的表
+	 */
+	private static void checkDatabase(List<Class<?>> entityClasses) throws Exception {
+		if (dataSource == null || entityClasses.isEmpty()) {
 			return;
 		}
+		Connection conn = DBConnectionPool.getConnection();
+		try {
+			// 只查当前库的表，表名大小写由数据库配置决定，比较时忽略大小写
+			Set<String> tableNames = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+			try (ResultSet rs = conn.getMetaData().getTables(conn.getCatalog(), null, "%", null)) {
+				while (rs.next()) {
+					tableNames.add(rs.getString("TABLE_NAME"));
+				}
+			}
+			for (Class<?> entityClass : entityClasses) {
+				checkDatabase(entityClass, tableNames, conn);
+			}
+		} finally {
+			DBConnectionPool.freeConnection(conn);
+		}
+	}
+
+	private static void checkDatabase(Class<?> entityClass, Set<String> tableNames, Connection conn) throws SQLException {
 		String tableName = JpaUtil.getTableName(entityClass);
-		ResultSet rs = conn.getMetaData().getTables(null, null, tableName, null);
-		if (rs.next()) {
+		if (tableNames.contains(tableName)) {
 			logger.info("DB table '{}' is exists", tableName);
-			rs.close();
 			return;
 		}
-		rs.close();
 		StringBuilder sql = new StringBuilder();
 		sql.append("CREATE TABLE ");
 		sql.append(tableName);
@@ -223,13 +295,14 @@ public class Setup {
 		Field[] fields = entityClass.getDeclaredFields();
 		for (Field field : fields) {
 			if (field.getType().isAnnotationPresent(Entity.class)) {
-				checkDatabase(field.getType(), conn);
+				checkDatabase(field.getType(), tableNames, conn);
 			}
 			sql.append(JpaUtil.convertToSqlColumn(field));
 		}
 		sql.deleteCharAt(sql.length() - 1);
 		sql.append(")");
 		executeSql(sql.toString(), conn);
+		tableNames.add(tableName);
 		addDBIndex(entityClass, tableName, conn);
 	}
 
@@ -342,8 +415,8 @@ public class Setup {
 		return exceptionHandlerMethods;
 	}
 
-	public static Map<String, Method> getWebMethods() {
-		return webMethods;
+	public static RouteTable getRouteTable() {
+		return routeTable;
 	}
 
 	public static Map<Method, Set<Method>> getMethodInterceptors() {
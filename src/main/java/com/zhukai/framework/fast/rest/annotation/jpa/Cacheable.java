@@ -0,0 +1,18 @@
+package com.zhukai.framework.fast.rest.annotation.jpa;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 开启实体的二级缓存，findOne、exists和保存前的存在检查按主键读缓存；
+ * save、delete时清除对应主键，@ExecuteUpdate清空该实体的缓存，事务中的修改在事务结束后再清除一次
+ */
+@Target({ ElementType.TYPE })
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Cacheable {
+	int maxSize() default 1000;
+
+	long ttl() default 600000;// 毫秒
+}
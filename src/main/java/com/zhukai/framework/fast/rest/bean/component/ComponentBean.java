@@ -11,6 +11,9 @@ public class ComponentBean extends BaseBean {
 
 	private boolean singleton;
 
+	// 注入完成后才发布的单例
+	private volatile Object singletonInstance;
+
 	public List<ChildBean> getChildren() {
 		return children;
 	}
@@ -26,4 +29,12 @@ public class ComponentBean extends BaseBean {
 	public void setSingleton(boolean singleton) {
 		this.singleton = singleton;
 	}
+
+	Object getSingletonInstance() {
+		return singletonInstance;
+	}
+
+	void setSingletonInstance(Object singletonInstance) {
+		this.singletonInstance = singletonInstance;
+	}
 }
@@ -4,20 +4,28 @@ import com.zhukai.framework.fast.rest.bean.BeanFactory;
 import com.zhukai.framework.fast.rest.bean.ChildBean;
 import com.zhukai.framework.fast.rest.proxy.ProxyFactory;
 import com.zhukai.framework.fast.rest.util.ReflectUtil;
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class ComponentBeanFactory implements BeanFactory<ComponentBean> {
 
 	private static final Logger logger = LoggerFactory.getLogger(ComponentBeanFactory.class);
 
 	private static ComponentBeanFactory instance = new ComponentBeanFactory();
-	private final Map<String, ComponentBean> componentBeanMap = Collections.synchronizedMap(new HashMap<>());
-	private final Map<String, Object> singletonBeanMap = Collections.synchronizedMap(new HashMap<>());
+	private final Map<String, ComponentBean> componentBeanMap = new ConcurrentHashMap<>();
+	private final Map<Class, String> beanNameMap = new ConcurrentHashMap<>();
+	// 单例只在创建时加锁，不用synchronized，创建中阻塞时不占住虚拟线程的载体线程；创建中（未发布）的单例，用于解决循环依赖
+	private final ReentrantLock singletonLock = new ReentrantLock();
+	private final Map<String, Object> earlySingletonMap = new HashMap<>();
+	private final List<ComponentBean> creatingBeans = new ArrayList<>();
 
 	public static ComponentBeanFactory getInstance() {
 		return instance;
@@ -28,27 +36,87 @@ public class ComponentBeanFactory implements BeanFactory<ComponentBean> {
 
 	@Override
 	public Object getBean(String beanName) {
-		if (!componentBeanMap.containsKey(beanName)) {
+		ComponentBean componentBean = componentBeanMap.get(beanName);
+		if (componentBean == null) {
 			logger.warn("ComponentBeanFactory not exits {}", beanName);
 			return null;
 		}
-		ComponentBean componentBean = componentBeanMap.get(beanName);
-		Class beanClass = componentBean.getBeanClass();
-		Object object;
-		if (componentBean.isSingleton()) {
-			if (singletonBeanMap.containsKey(beanName)) {
-				return singletonBeanMap.get(beanName);
-			} else {
-				object = ProxyFactory.createInstance(beanClass);
-				singletonBeanMap.put(beanName, object);
+		if (!componentBean.isSingleton()) {
+			return createBean(componentBean);
+		}
+		Object object = componentBean.getSingletonInstance();
+		if (object != null) {
+			return object;
+		}
+		return createSingleton(componentBean);
+	}
+
+	/**
+	 * 类对应的注册名只解析一次
+	 */
+	@Override
+	public <T> T getBean(Class<T> requiredType) {
+		String beanName = beanNameMap.get(requiredType);
+		if (beanName == null) {
+			try {
+				beanName = ReflectUtil.getComponentValue(requiredType);
+			} catch (Throwable throwable) {
+				return null;
 			}
-		} else {
-			object = ProxyFactory.createInstance(beanClass);
+			beanName = StringUtils.isBlank(beanName) ? requiredType.getName() : beanName;
+			beanNameMap.put(requiredType, beanName);
 		}
+		return requiredType.cast(getBean(beanName));
+	}
+
+	/**
+	 * 同一时间只有一个线程创建单例。创建中的单例先放入earlySingletonMap，
+	 * 循环依赖时注入未完成的实例；最外层的单例注入完成后，这次创建的单例一起发布
+	 */
+	private Object createSingleton(ComponentBean componentBean) {
+		singletonLock.lock();
+		try {
+			Object object = componentBean.getSingletonInstance();
+			if (object != null) {
+				return object;
+			}
+			object = earlySingletonMap.get(componentBean.getRegisterName());
+			if (object != null) {
+				return object;
+			}
+			boolean outermost = creatingBeans.isEmpty();
+			try {
+				object = ProxyFactory.createInstance(componentBean.getBeanClass());
+				earlySingletonMap.put(componentBean.getRegisterName(), object);
+				creatingBeans.add(componentBean);
+				injectChildren(componentBean, object);
+				if (outermost) {
+					for (ComponentBean creatingBean : creatingBeans) {
+						creatingBean.setSingletonInstance(earlySingletonMap.get(creatingBean.getRegisterName()));
+					}
+				}
+				return object;
+			} finally {
+				if (outermost) {
+					creatingBeans.clear();
+					earlySingletonMap.clear();
+				}
+			}
+		} finally {
+			singletonLock.unlock();
+		}
+	}
+
+	private Object createBean(ComponentBean componentBean) {
+		Object object = ProxyFactory.createInstance(componentBean.getBeanClass());
+		injectChildren(componentBean, object);
+		return object;
+	}
+
+	private void injectChildren(ComponentBean componentBean, Object object) {
 		for (ChildBean childBean : componentBean.getChildren()) {
 			ReflectUtil.setFieldValue(object, childBean.getFieldName(), childBean.getBeanFactory().getBean(childBean.getRegisterName()));
 		}
-		return object;
 	}
 
 	@Override
@@ -58,8 +126,7 @@ public class ComponentBeanFactory implements BeanFactory<ComponentBean> {
 
 	@Override
 	public void registerBean(ComponentBean componentBean) {
-		if (!componentBeanMap.containsKey(componentBean.getRegisterName())) {
-			componentBeanMap.put(componentBean.getRegisterName(), componentBean);
+		if (componentBeanMap.putIfAbsent(componentBean.getRegisterName(), componentBean) == null) {
 			logger.info("Register in componentBeanFactory: {} = {}.class", componentBean.getRegisterName(), componentBean.getBeanClass().getSimpleName());
 		}
 	}
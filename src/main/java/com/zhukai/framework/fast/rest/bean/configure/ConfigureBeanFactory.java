@@ -1,10 +1,9 @@
 package com.zhukai.framework.fast.rest.bean.configure;
 
 import java.lang.reflect.Field;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -12,6 +11,7 @@ import org.slf4j.LoggerFactory;
 import com.zhukai.framework.fast.rest.bean.BeanFactory;
 import com.zhukai.framework.fast.rest.config.DataSource;
 import com.zhukai.framework.fast.rest.util.JsonUtil;
+import com.zhukai.framework.fast.rest.util.ReflectUtil;
 import com.zhukai.framework.fast.rest.util.TypeUtil;
 
 public class ConfigureBeanFactory implements BeanFactory<ConfigureBean> {
@@ -23,7 +23,7 @@ public class ConfigureBeanFactory implements BeanFactory<ConfigureBean> {
 		return instance;
 	}
 
-	private final Map<String, Object> configureMap = Collections.synchronizedMap(new HashMap<>());
+	private final Map<String, Object> configureMap = new ConcurrentHashMap<>();
 
 	private ConfigureBeanFactory() {
 	}
@@ -50,19 +50,20 @@ public class ConfigureBeanFactory implements BeanFactory<ConfigureBean> {
 				String prefix = configureBean.getPrefix().equals("") ? "" : configureBean.getPrefix() + ".";
 				Field[] fields = configureBean.getBeanClass().getDeclaredFields();
 				for (Field field : fields) {
-					field.setAccessible(true);
 					Object configValue = properties.get(prefix + field.getName());
 					if (configValue == null) {
 						continue;
 					}
-					field.set(object, TypeUtil.convert(configValue, field.getType()));
+					ReflectUtil.getFieldAccessor(field).set(object, TypeUtil.convert(configValue, field.getType()));
 				}
 			}
 			if (configureBean.getBeanClass().equals(DataSource.class) && object != null && ((DataSource) object).getUrl() == null) {
 				return;
 			}
+			if (configureMap.putIfAbsent(configureBean.getRegisterName(), object) != null) {
+				return;
+			}
 			logger.info("{} = {}", configureBean.getBeanClass().getSimpleName(), JsonUtil.toJson(object));
-			configureMap.put(configureBean.getRegisterName(), object);
 			logger.info("Register in configureBeanFactory: {} = {}.class", configureBean.getRegisterName(), configureBean.getBeanClass().getSimpleName());
 		} catch (Exception e) {
 			logger.error("Register bean fail, registerName: {}", configureBean.getRegisterName(), e);
@@ -5,4 +5,7 @@ public interface HttpHeaderType {
 	String CONTENT_LENGTH = "Content-Length";
 	String SET_COOKIE = "Set-Cookie";
 	String CONTENT_DISPOSITION = "Content-Disposition";
+	String CONNECTION = "Connection";
+	String TRANSFER_ENCODING = "Transfer-Encoding";
+	String RETRY_AFTER = "Retry-After";
 }
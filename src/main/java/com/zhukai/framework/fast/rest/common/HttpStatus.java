@@ -4,7 +4,7 @@ package com.zhukai.framework.fast.rest.common;
  * Created by homolo on 17-8-2.
  */
 public enum HttpStatus {
-	OK(200, "OK"), BadRequest(400, "Bad Request"), NotFound(404, "Not Found"), MethodNotAllowed(405, "Method Not Allowed"), InternalServerError(500, "Internal Server Error");
+	OK(200, "OK"), BadRequest(400, "Bad Request"), NotFound(404, "Not Found"), MethodNotAllowed(405, "Method Not Allowed"), PayloadTooLarge(413, "Payload Too Large"), InternalServerError(500, "Internal Server Error"), ServiceUnavailable(503, "Service Unavailable");
 
 	private int code;
 	private String codeStr;
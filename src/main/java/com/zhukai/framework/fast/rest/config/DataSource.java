@@ -11,6 +11,15 @@ public class DataSource {
 	private Integer minConn = 2;
 	private Integer maxConn = 100;
 	private Long timeout = 500L;
+	private Long validationTimeout = 3000L;// 借出前校验连接的超时（毫秒）
+	private Long idleTimeout = 600000L;// 超过minConn的空闲连接保留时间（毫秒）
+	private Long maxLifetime = 1800000L;// 连接最长存活时间（毫秒），应小于数据库的wait_timeout
+	private Long keepAliveTime = 120000L;// 空闲连接的保活校验间隔（毫秒）
+	private Long leakDetectionThreshold = 0L;// 连接借出超过该时间未归还时打印借出位置（毫秒），0不检测
+	private Integer statementCacheSize = 64;// 每个连接缓存的PreparedStatement数，0不缓存
+	private Integer maxInSize = 500;// IN查询每次最多带的参数个数
+	private Integer batchSize = 1000;// 批量保存时每批的行数，MySQL连接默认开启rewriteBatchedStatements，url中指定时以url为准
+	private Integer fetchSize = 1000;// 返回Stream/CloseableIterator的查询每次从数据库取的行数，MySQL驱动固定逐行流式读取
 
 	public DataSource() {
 	}
@@ -71,9 +80,82 @@ public class DataSource {
 		this.timeout = timeout;
 	}
 
+	public Long getValidationTimeout() {
+		return validationTimeout;
+	}
+
+	public void setValidationTimeout(Long validationTimeout) {
+		this.validationTimeout = validationTimeout;
+	}
+
+	public Long getIdleTimeout() {
+		return idleTimeout;
+	}
+
+	public void setIdleTimeout(Long idleTimeout) {
+		this.idleTimeout = idleTimeout;
+	}
+
+	public Long getMaxLifetime() {
+		return maxLifetime;
+	}
+
+	public void setMaxLifetime(Long maxLifetime) {
+		this.maxLifetime = maxLifetime;
+	}
+
+	public Long getKeepAliveTime() {
+		return keepAliveTime;
+	}
+
+	public void setKeepAliveTime(Long keepAliveTime) {
+		this.keepAliveTime = keepAliveTime;
+	}
+
+	public Long getLeakDetectionThreshold() {
+		return leakDetectionThreshold;
+	}
+
+	public void setLeakDetectionThreshold(Long leakDetectionThreshold) {
+		this.leakDetectionThreshold = leakDetectionThreshold;
+	}
+
+	public Integer getStatementCacheSize() {
+		return statementCacheSize;
+	}
+
+	public void setStatementCacheSize(Integer statementCacheSize) {
+		this.statementCacheSize = statementCacheSize;
+	}
+
+	public Integer getMaxInSize() {
+		return maxInSize;
+	}
+
+	public void setMaxInSize(Integer maxInSize) {
+		this.maxInSize = maxInSize;
+	}
+
+	public Integer getBatchSize() {
+		return batchSize;
+	}
+
+	public void setBatchSize(Integer batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	public Integer getFetchSize() {
+		return fetchSize;
+	}
+
+	public void setFetchSize(Integer fetchSize) {
+		this.fetchSize = fetchSize;
+	}
+
 	@Override
 	public String toString() {
 		return "DataSource{" + "username='" + username + '\'' + ", password='" + password + '\'' + ", url='" + url + '\'' + ", driverClass='" + driverClass + '\'' + ", minConn=" + minConn + ", maxConn=" + maxConn + ", timeout=" + timeout
-				+ '}';
+				+ ", validationTimeout=" + validationTimeout + ", idleTimeout=" + idleTimeout + ", maxLifetime=" + maxLifetime + ", keepAliveTime=" + keepAliveTime + ", leakDetectionThreshold=" + leakDetectionThreshold
+				+ ", statementCacheSize=" + statementCacheSize + ", maxInSize=" + maxInSize + ", batchSize=" + batchSize + ", fetchSize=" + fetchSize + '}';
 	}
 }
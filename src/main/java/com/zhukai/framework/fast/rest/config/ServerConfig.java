@@ -14,6 +14,21 @@ public class ServerConfig {
 	private Boolean needClientAuth = false;
 	private String keyStoreFile;
 	private String keyStorePassword;
+	private Integer workerThreads = Runtime.getRuntime().availableProcessors();
+	private Long keepAliveTimeout = 20000L;
+	private Long writeTimeout = 30000L;
+	private Long readTimeout = 30000L;// 读取一个请求时两次读之间的最大间隔，不大于0时不限制
+	private Long maxRequestBodySize = 10485760L;// 请求体的最大字节数，超过时返回413并关闭连接
+	private Integer handleCoreThreads = Runtime.getRuntime().availableProcessors() * 2;
+	private Integer handleMaxThreads = 200;
+	private Integer handleQueueCapacity = 1000;
+	private Integer eventCoreThreads = Runtime.getRuntime().availableProcessors();
+	private Integer eventMaxThreads = 50;
+	private Integer eventQueueCapacity = 1000;
+	private String rejectPolicy = "abort";// abort或caller-runs
+	private Integer retryAfter = 5;// 拒绝请求时Retry-After的秒数
+	private Boolean useVirtualThreads = false;// JDK 21+时每个请求一个虚拟线程，业务代码在synchronized中阻塞会占住载体线程
+	private Integer virtualThreadLimit = 10000;// 使用虚拟线程时同时处理的最大请求数
 
 	public ServerConfig() {
 	}
@@ -90,9 +105,131 @@ public class ServerConfig {
 		this.indexPage = indexPage;
 	}
 
+	public Integer getWorkerThreads() {
+		return workerThreads;
+	}
+
+	public void setWorkerThreads(Integer workerThreads) {
+		this.workerThreads = workerThreads;
+	}
+
+	public Long getKeepAliveTimeout() {
+		return keepAliveTimeout;
+	}
+
+	public void setKeepAliveTimeout(Long keepAliveTimeout) {
+		this.keepAliveTimeout = keepAliveTimeout;
+	}
+
+	public Long getWriteTimeout() {
+		return writeTimeout;
+	}
+
+	public void setWriteTimeout(Long writeTimeout) {
+		this.writeTimeout = writeTimeout;
+	}
+
+	public Long getReadTimeout() {
+		return readTimeout;
+	}
+
+	public void setReadTimeout(Long readTimeout) {
+		this.readTimeout = readTimeout;
+	}
+
+	public Long getMaxRequestBodySize() {
+		return maxRequestBodySize;
+	}
+
+	public void setMaxRequestBodySize(Long maxRequestBodySize) {
+		this.maxRequestBodySize = maxRequestBodySize;
+	}
+
+	public Integer getHandleCoreThreads() {
+		return handleCoreThreads;
+	}
+
+	public void setHandleCoreThreads(Integer handleCoreThreads) {
+		this.handleCoreThreads = handleCoreThreads;
+	}
+
+	public Integer getHandleMaxThreads() {
+		return handleMaxThreads;
+	}
+
+	public void setHandleMaxThreads(Integer handleMaxThreads) {
+		this.handleMaxThreads = handleMaxThreads;
+	}
+
+	public Integer getHandleQueueCapacity() {
+		return handleQueueCapacity;
+	}
+
+	public void setHandleQueueCapacity(Integer handleQueueCapacity) {
+		this.handleQueueCapacity = handleQueueCapacity;
+	}
+
+	public Integer getEventCoreThreads() {
+		return eventCoreThreads;
+	}
+
+	public void setEventCoreThreads(Integer eventCoreThreads) {
+		this.eventCoreThreads = eventCoreThreads;
+	}
+
+	public Integer getEventMaxThreads() {
+		return eventMaxThreads;
+	}
+
+	public void setEventMaxThreads(Integer eventMaxThreads) {
+		this.eventMaxThreads = eventMaxThreads;
+	}
+
+	public Integer getEventQueueCapacity() {
+		return eventQueueCapacity;
+	}
+
+	public void setEventQueueCapacity(Integer eventQueueCapacity) {
+		this.eventQueueCapacity = eventQueueCapacity;
+	}
+
+	public String getRejectPolicy() {
+		return rejectPolicy;
+	}
+
+	public void setRejectPolicy(String rejectPolicy) {
+		this.rejectPolicy = rejectPolicy;
+	}
+
+	public Integer getRetryAfter() {
+		return retryAfter;
+	}
+
+	public void setRetryAfter(Integer retryAfter) {
+		this.retryAfter = retryAfter;
+	}
+
+	public Boolean getUseVirtualThreads() {
+		return useVirtualThreads;
+	}
+
+	public void setUseVirtualThreads(Boolean useVirtualThreads) {
+		this.useVirtualThreads = useVirtualThreads;
+	}
+
+	public Integer getVirtualThreadLimit() {
+		return virtualThreadLimit;
+	}
+
+	public void setVirtualThreadLimit(Integer virtualThreadLimit) {
+		this.virtualThreadLimit = virtualThreadLimit;
+	}
+
 	@Override
 	public String toString() {
 		return "ServerConfig{" + "sessionTimeout=" + sessionTimeout + ", port=" + port + ", fileTmp='" + fileTmp + '\'' + ", charset='" + charset + '\'' + ", indexPage='" + indexPage + '\'' + ", useSSL=" + useSSL + ", needClientAuth="
-				+ needClientAuth + ", keyStoreFile='" + keyStoreFile + '\'' + ", keyStorePassword='" + keyStorePassword + '\'' + '}';
+				+ needClientAuth + ", keyStoreFile='" + keyStoreFile + '\'' + ", keyStorePassword='" + keyStorePassword + '\'' + ", workerThreads=" + workerThreads + ", keepAliveTimeout=" + keepAliveTimeout + ", writeTimeout=" + writeTimeout + ", readTimeout=" + readTimeout + ", maxRequestBodySize=" + maxRequestBodySize
+				+ ", handleCoreThreads=" + handleCoreThreads + ", handleMaxThreads=" + handleMaxThreads + ", handleQueueCapacity=" + handleQueueCapacity + ", eventCoreThreads=" + eventCoreThreads + ", eventMaxThreads=" + eventMaxThreads + ", eventQueueCapacity=" + eventQueueCapacity + ", rejectPolicy='" + rejectPolicy + '\'' + ", retryAfter=" + retryAfter
+				+ ", useVirtualThreads=" + useVirtualThreads + ", virtualThreadLimit=" + virtualThreadLimit + '}';
 	}
 }
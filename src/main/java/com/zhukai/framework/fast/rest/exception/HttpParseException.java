@@ -0,0 +1,21 @@
+package com.zhukai.framework.fast.rest.exception;
+
+public class HttpParseException extends Exception {
+	private static final long serialVersionUID = 1L;
+
+	public HttpParseException() {
+		super();
+	}
+
+	public HttpParseException(Throwable cause) {
+		super(cause);
+	}
+
+	public HttpParseException(String message) {
+		super(message);
+	}
+
+	public HttpParseException(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
@@ -0,0 +1,12 @@
+package com.zhukai.framework.fast.rest.exception;
+
+/**
+ * 请求体超过ServerConfig.maxRequestBodySize，不再读取，返回413后关闭连接
+ */
+public class PayloadTooLargeException extends HttpParseException {
+	private static final long serialVersionUID = 1L;
+
+	public PayloadTooLargeException(String message) {
+		super(message);
+	}
+}
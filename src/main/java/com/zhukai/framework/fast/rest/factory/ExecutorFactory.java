@@ -1,15 +1,27 @@
 package com.zhukai.framework.fast.rest.factory;
 
-import com.zhukai.framework.fast.rest.FastRestApplication;
+import com.zhukai.framework.fast.rest.bean.configure.ConfigureBeanFactory;
+import com.zhukai.framework.fast.rest.config.ServerConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 public class ExecutorFactory {
+	private static final Logger logger = LoggerFactory.getLogger(ExecutorFactory.class);
+	public static final String REJECT_POLICY_CALLER_RUNS = "caller-runs";
+	private static final long KEEP_ALIVE_SECONDS = 60L;
+
 	private static ScheduledThreadPoolExecutor scheduledTaskExecutor;
-	private static ExecutorService eventExecutor;
-	private static ExecutorService handleExecutor;
+	private static volatile ThreadPoolExecutor eventExecutor;
+	private static volatile ExecutorService handleExecutor;
 
 	public static ScheduledThreadPoolExecutor getScheduledTaskExecutor() {
 		if (scheduledTaskExecutor == null) {
@@ -18,20 +30,76 @@ public class ExecutorFactory {
 		return scheduledTaskExecutor;
 	}
 
+	/**
+	 * 线程数和队列已满时按rejectPolicy处理，abort时submit抛出RejectedExecutionException
+	 */
 	public static ExecutorService getEventExecutor() {
 		if (eventExecutor == null) {
-			eventExecutor = Executors.newCachedThreadPool(new PoolNameThreadFactory("event"));
+			synchronized (ExecutorFactory.class) {
+				if (eventExecutor == null) {
+					ServerConfig config = getServerConfig();
+					eventExecutor = createExecutor(config.getEventCoreThreads(), config.getEventMaxThreads(), config.getEventQueueCapacity(), "event", createRejectedHandler(config.getRejectPolicy()));
+				}
+			}
 		}
 		return eventExecutor;
 	}
 
+	/**
+	 * 线程数和队列已满时execute抛出RejectedExecutionException，由服务器直接返回503。
+	 * NIO的处理线程不能由worker线程代替，caller-runs只对https（阻塞IO）生效。
+	 * 开启useVirtualThreads且JDK支持时每个请求一个虚拟线程，否则使用平台线程池
+	 */
 	public static ExecutorService getHandleExecutor() {
 		if (handleExecutor == null) {
-			handleExecutor = Executors.newCachedThreadPool(new PoolNameThreadFactory(FastRestApplication.getServerConfig().isUseSSL() ? "https" : "http" + "-handle"));
+			synchronized (ExecutorFactory.class) {
+				if (handleExecutor == null) {
+					ServerConfig config = getServerConfig();
+					String poolName = config.isUseSSL() ? "https-handle" : "http-handle";
+					if (config.getUseVirtualThreads()) {
+						handleExecutor = VirtualThreadExecutor.create(poolName, config.getVirtualThreadLimit());
+						if (handleExecutor != null) {
+							logger.info("Handle requests with virtual threads, limit: {}", config.getVirtualThreadLimit());
+							return handleExecutor;
+						}
+						logger.warn("Virtual threads are not supported by this JVM, handle requests with platform threads");
+					}
+					RejectedExecutionHandler rejectedHandler = config.isUseSSL() ? createRejectedHandler(config.getRejectPolicy()) : new ThreadPoolExecutor.AbortPolicy();
+					handleExecutor = createExecutor(config.getHandleCoreThreads(), config.getHandleMaxThreads(), config.getHandleQueueCapacity(), poolName, rejectedHandler);
+				}
+			}
 		}
 		return handleExecutor;
 	}
 
+	/** 等待处理的请求数 */
+	public static int getHandleQueueSize() {
+		if (handleExecutor instanceof ThreadPoolExecutor) {
+			return ((ThreadPoolExecutor) handleExecutor).getQueue().size();
+		} else if (handleExecutor instanceof VirtualThreadExecutor) {
+			return ((VirtualThreadExecutor) handleExecutor).getQueueLength();
+		}
+		return 0;
+	}
+
+	/** 正在处理请求的线程数 */
+	public static int getHandleActiveCount() {
+		if (handleExecutor instanceof ThreadPoolExecutor) {
+			return ((ThreadPoolExecutor) handleExecutor).getActiveCount();
+		} else if (handleExecutor instanceof VirtualThreadExecutor) {
+			return ((VirtualThreadExecutor) handleExecutor).getActiveCount();
+		}
+		return 0;
+	}
+
+	public static int getEventQueueSize() {
+		return eventExecutor == null ? 0 : eventExecutor.getQueue().size();
+	}
+
+	public static int getEventActiveCount() {
+		return eventExecutor == null ? 0 : eventExecutor.getActiveCount();
+	}
+
 	public static void clearExecutors() {
 		if (scheduledTaskExecutor != null) {
 			scheduledTaskExecutor.shutdownNow();
@@ -44,4 +112,22 @@ public class ExecutorFactory {
 		}
 	}
 
+	private static ThreadPoolExecutor createExecutor(int coreThreads, int maxThreads, int queueCapacity, String poolName, RejectedExecutionHandler rejectedHandler) {
+		BlockingQueue<Runnable> queue = queueCapacity > 0 ? new ArrayBlockingQueue<>(queueCapacity) : new SynchronousQueue<>();
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(coreThreads, Math.max(coreThreads, maxThreads), KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, queue, new PoolNameThreadFactory(poolName), rejectedHandler);
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	private static RejectedExecutionHandler createRejectedHandler(String rejectPolicy) {
+		if (REJECT_POLICY_CALLER_RUNS.equalsIgnoreCase(rejectPolicy)) {
+			return new ThreadPoolExecutor.CallerRunsPolicy();
+		}
+		return new ThreadPoolExecutor.AbortPolicy();
+	}
+
+	private static ServerConfig getServerConfig() {
+		return ConfigureBeanFactory.getInstance().getBean(ServerConfig.class);
+	}
+
 }
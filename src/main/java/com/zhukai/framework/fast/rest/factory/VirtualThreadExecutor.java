@@ -0,0 +1,105 @@
+package com.zhukai.framework.fast.rest.factory;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 每个任务一个虚拟线程（JDK 21+），同时运行的任务数超过limit时拒绝。
+ * 为了在Java 8上编译，虚拟线程相关的API都通过反射调用
+ */
+class VirtualThreadExecutor extends AbstractExecutorService {
+	private final ExecutorService delegate;
+	private final Semaphore permits;
+	private final AtomicInteger waiting = new AtomicInteger();
+	private final int limit;
+
+	private VirtualThreadExecutor(ExecutorService delegate, int limit) {
+		this.delegate = delegate;
+		this.limit = limit;
+		this.permits = new Semaphore(limit);
+	}
+
+	/**
+	 * @return 当前JVM不支持虚拟线程时返回null
+	 */
+	static VirtualThreadExecutor create(String poolName, int limit) {
+		try {
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, poolName + "-", 1L);
+			ThreadFactory threadFactory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+			Method newExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+			return new VirtualThreadExecutor((ExecutorService) newExecutor.invoke(null, threadFactory), limit);
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	/** 正在运行的任务数 */
+	int getActiveCount() {
+		return Math.max(0, limit - permits.availablePermits() - waiting.get());
+	}
+
+	/**
+	 * 已接收但虚拟线程还没开始运行的任务数（等待载体线程）。
+	 * 超过limit的任务直接拒绝，不会阻塞在permits上
+	 */
+	int getQueueLength() {
+		return waiting.get() + permits.getQueueLength();
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		if (!permits.tryAcquire()) {
+			throw new RejectedExecutionException("Virtual thread limit " + limit + " is reached");
+		}
+		waiting.incrementAndGet();
+		try {
+			delegate.execute(() -> {
+				waiting.decrementAndGet();
+				try {
+					command.run();
+				} finally {
+					permits.release();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			waiting.decrementAndGet();
+			permits.release();
+			throw e;
+		}
+	}
+
+	@Override
+	public void shutdown() {
+		delegate.shutdown();
+	}
+
+	@Override
+	public List<Runnable> shutdownNow() {
+		return delegate.shutdownNow();
+	}
+
+	@Override
+	public boolean isShutdown() {
+		return delegate.isShutdown();
+	}
+
+	@Override
+	public boolean isTerminated() {
+		return delegate.isTerminated();
+	}
+
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return delegate.awaitTermination(timeout, unit);
+	}
+}
@@ -1,55 +1,134 @@
 package com.zhukai.framework.fast.rest.handle;
 
 import com.zhukai.framework.fast.rest.Constants;
+import com.zhukai.framework.fast.rest.FastRestApplication;
 import com.zhukai.framework.fast.rest.http.HttpParser;
+import com.zhukai.framework.fast.rest.http.ResponseBodyOutputStream;
+import com.zhukai.framework.fast.rest.http.reader.HttpReader;
+import com.zhukai.framework.fast.rest.util.BufferPool;
 import com.zhukai.framework.fast.rest.util.JsonUtil;
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.PrintStream;
+import java.io.OutputStream;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
 
 public class ActionHandle extends AbstractActionHandle {
 
 	private static final Logger logger = LoggerFactory.getLogger(ActionHandle.class);
 	private Socket socket;
+	private OutputStream out;
+	private boolean keepAlive;
 
 	public ActionHandle(Socket socket) {
 		this.socket = socket;
-		this.request = HttpParser.createRequest(socket);
+	}
+
+	@Override
+	public void run() {
+		try {
+			long keepAliveTimeout = FastRestApplication.getServerConfig().getKeepAliveTimeout();
+			long timeout = keepAliveTimeout > 0 ? keepAliveTimeout : FastRestApplication.getServerConfig().getReadTimeout();
+			socket.setSoTimeout((int) Math.max(timeout, 0));
+			HttpReader httpReader = new HttpReader(new BufferedInputStream(socket.getInputStream()));
+			out = new BufferedOutputStream(socket.getOutputStream(), Constants.BUFFER_SIZE * 8);
+			do {
+				keepAlive = false;
+				request = HttpParser.createRequest(httpReader);
+				response = null;
+				super.run();
+			} while (request != null && keepAlive);
+		} catch (IOException e) {
+			logger.debug("Connection error", e);
+		} finally {
+			IOUtils.closeQuietly(socket);
+		}
 	}
 
 	@Override
 	protected void respond() {
-		PrintStream out = null;
 		try {
 			if (response == null) {
 				return;
 			}
-			out = new PrintStream(socket.getOutputStream(), true, response.getCharacterEncoding());
-			String httpHeader = HttpParser.parseHttpString(response);
-			out.print(httpHeader);
-			if (response.getResult() == null) {
-				return;
-			}
-			if (response.getResult() instanceof InputStream) {
-				InputStream inputStream = (InputStream) response.getResult();
-				int byteCount;
-				byte[] bytes = new byte[Constants.BUFFER_SIZE * 1024];
-				while ((byteCount = inputStream.read(bytes)) != -1) {
-					out.write(bytes, 0, byteCount);
+			Object result = response.getResult();
+			if (result instanceof File) {
+				writeFile((File) result);
+			} else if (result instanceof InputStream) {
+				String httpHeader = HttpParser.parseHttpString(response);
+				out.write(httpHeader.getBytes(response.getCharacterEncoding()));
+				try {
+					IOUtils.copy((InputStream) result, out);
+				} finally {
+					((InputStream) result).close();
 				}
-				inputStream.close();
 			} else {
-				out.print(JsonUtil.toJson(response.getResult()));
+				writeJson(result);
 			}
+			out.flush();
+			keepAlive = HttpParser.isKeepAlive(response);
 		} catch (Exception e) {
 			logger.error("Respond error", e);
+		}
+	}
+
+	/**
+	 * Content-Length取打开后的文件大小，只发送这么多字节，文件在发送中被截断时抛出异常关闭连接
+	 */
+	private void writeFile(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			response.setContentLength(size);
+			out.write(HttpParser.parseHttpString(response).getBytes(response.getCharacterEncoding()));
+			WritableByteChannel target = Channels.newChannel(out);
+			long position = 0;
+			while (position < size) {
+				long written = channel.transferTo(position, size - position, target);
+				if (written <= 0) {
+					throw new IOException("File is truncated while sending");
+				}
+				position += written;
+			}
+		}
+	}
+
+	private void writeJson(Object result) throws IOException {
+		byte[] copyBuffer = new byte[Constants.WRITE_BUFFER_SIZE];
+		ResponseBodyOutputStream body = new ResponseBodyOutputStream(response, new ResponseBodyOutputStream.Sink() {
+			@Override
+			public void writeHeader(byte[] header) throws IOException {
+				out.write(header);
+			}
+
+			@Override
+			public void write(ByteBuffer buffer) throws IOException {
+				try {
+					while (buffer.hasRemaining()) {
+						int size = Math.min(buffer.remaining(), copyBuffer.length);
+						buffer.get(copyBuffer, 0, size);
+						out.write(copyBuffer, 0, size);
+					}
+				} finally {
+					BufferPool.release(buffer);
+				}
+			}
+		});
+		try {
+			JsonUtil.writeJson(result, body, response.getCharacterEncoding());
+			body.close();
 		} finally {
-			IOUtils.closeQuietly(out);
-			IOUtils.closeQuietly(socket);
+			body.discard();
 		}
 	}
 
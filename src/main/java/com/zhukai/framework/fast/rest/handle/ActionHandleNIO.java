@@ -1,16 +1,28 @@
 package com.zhukai.framework.fast.rest.handle;
 
-import java.nio.channels.SelectionKey;
-
+import com.zhukai.framework.fast.rest.Constants;
+import com.zhukai.framework.fast.rest.http.HttpParser;
+import com.zhukai.framework.fast.rest.http.ResponseBodyOutputStream;
 import com.zhukai.framework.fast.rest.http.request.HttpRequest;
+import com.zhukai.framework.fast.rest.server.NioConnection;
+import com.zhukai.framework.fast.rest.util.BufferPool;
+import com.zhukai.framework.fast.rest.util.JsonUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 public class ActionHandleNIO extends AbstractActionHandle {
+	private static final Logger logger = LoggerFactory.getLogger(ActionHandleNIO.class);
 
-	private SelectionKey key;
+	private NioConnection connection;
 
-	public ActionHandleNIO(HttpRequest request, SelectionKey key) {
+	public ActionHandleNIO(HttpRequest request, NioConnection connection) {
 		this.request = request;
-		this.key = key;
+		this.connection = connection;
 	}
 
 	@Override
@@ -18,7 +30,61 @@ public class ActionHandleNIO extends AbstractActionHandle {
 		if (response == null) {
 			return;
 		}
-		key.attach(response);
-		key.interestOps(SelectionKey.OP_WRITE);
+		try {
+			Object result = response.getResult();
+			if (result instanceof File) {
+				connection.writeFile(response, (File) result);
+			} else if (result instanceof InputStream) {
+				String httpHeader = HttpParser.parseHttpString(response);
+				connection.write(ByteBuffer.wrap(httpHeader.getBytes(response.getCharacterEncoding())));
+				writeInputStream((InputStream) result);
+			} else {
+				writeJson(result);
+			}
+			connection.complete(HttpParser.isKeepAlive(response));
+		} catch (IOException e) {
+			logger.debug("Write response error", e);
+			connection.abort();
+		} catch (Exception e) {
+			logger.error("Write response error", e);
+			connection.abort();
+		}
+	}
+
+	private void writeJson(Object result) throws IOException {
+		ResponseBodyOutputStream body = new ResponseBodyOutputStream(response, new ResponseBodyOutputStream.Sink() {
+			@Override
+			public void writeHeader(byte[] header) throws IOException {
+				connection.write(ByteBuffer.wrap(header));
+			}
+
+			@Override
+			public void write(ByteBuffer buffer) throws IOException {
+				connection.writePooled(buffer);
+			}
+		});
+		try {
+			JsonUtil.writeJson(result, body, response.getCharacterEncoding());
+			body.close();
+		} finally {
+			body.discard();
+		}
+	}
+
+	private void writeInputStream(InputStream in) throws IOException {
+		try {
+			byte[] chunk = new byte[Constants.WRITE_BUFFER_SIZE];
+			int length;
+			while ((length = in.read(chunk)) != -1) {
+				if (length == 0) {
+					continue;
+				}
+				ByteBuffer buffer = BufferPool.acquire();
+				buffer.put(chunk, 0, length).flip();
+				connection.writePooled(buffer);
+			}
+		} finally {
+			in.close();
+		}
 	}
 }
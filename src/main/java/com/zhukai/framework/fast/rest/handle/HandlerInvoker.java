@@ -0,0 +1,120 @@
+package com.zhukai.framework.fast.rest.handle;
+
+import com.zhukai.framework.fast.rest.annotation.web.PathVariable;
+import com.zhukai.framework.fast.rest.annotation.web.RequestAttribute;
+import com.zhukai.framework.fast.rest.annotation.web.RequestBody;
+import com.zhukai.framework.fast.rest.annotation.web.RequestHeader;
+import com.zhukai.framework.fast.rest.annotation.web.RequestParam;
+import com.zhukai.framework.fast.rest.bean.component.ComponentBeanFactory;
+import com.zhukai.framework.fast.rest.common.MultipartFile;
+import com.zhukai.framework.fast.rest.http.HttpResponse;
+import com.zhukai.framework.fast.rest.http.Session;
+import com.zhukai.framework.fast.rest.http.request.HttpRequest;
+import com.zhukai.framework.fast.rest.util.JsonUtil;
+import com.zhukai.framework.fast.rest.util.TypeUtil;
+import net.sf.cglib.reflect.FastClass;
+import net.sf.cglib.reflect.FastMethod;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.Map;
+
+/**
+ * 一个web方法的调用器，启动时生成cglib FastMethod和每个参数的取值函数，
+ * 请求时不再做注解查找和Method.invoke反射调用
+ */
+public class HandlerInvoker {
+	private static final Logger logger = LoggerFactory.getLogger(HandlerInvoker.class);
+
+	private final Method method;
+	private final FastMethod fastMethod;
+	private final ArgumentResolver[] resolvers;
+
+	HandlerInvoker(Method method) {
+		this.method = method;
+		this.fastMethod = createFastMethod(method);
+		Parameter[] parameters = method.getParameters();
+		this.resolvers = new ArgumentResolver[parameters.length];
+		for (int i = 0; i < parameters.length; i++) {
+			resolvers[i] = createResolver(parameters[i]);
+		}
+	}
+
+	public Method getMethod() {
+		return method;
+	}
+
+	Object invoke(HttpRequest request, HttpResponse response, Map<String, String> pathVariables) throws Exception {
+		Object[] args = new Object[resolvers.length];
+		for (int i = 0; i < resolvers.length; i++) {
+			args[i] = resolvers[i].resolve(request, response, pathVariables);
+		}
+		Object object = ComponentBeanFactory.getInstance().getBean(method.getDeclaringClass());
+		if (fastMethod != null) {
+			return fastMethod.invoke(object, args);
+		}
+		return method.invoke(object, args);
+	}
+
+	/** 无法生成FastClass时（如类不是public）退回到反射调用 */
+	private static FastMethod createFastMethod(Method method) {
+		try {
+			return FastClass.create(method.getDeclaringClass()).getMethod(method);
+		} catch (RuntimeException e) {
+			logger.warn("Create fast method error, use reflection: {} - {}", method, e.toString());
+			return null;
+		}
+	}
+
+	private static ArgumentResolver createResolver(Parameter parameter) {
+		Class<?> type = parameter.getType();
+		if (HttpRequest.class.isAssignableFrom(type)) {
+			return (request, response, pathVariables) -> request;
+		}
+		if (Session.class.isAssignableFrom(type)) {
+			return (request, response, pathVariables) -> request.getSession();
+		}
+		if (HttpResponse.class.isAssignableFrom(type)) {
+			return (request, response, pathVariables) -> response;
+		}
+		if (MultipartFile.class.isAssignableFrom(type)) {
+			String fileName = parameter.getAnnotation(RequestParam.class).value();
+			return (request, response, pathVariables) -> request.getMultipartFile(fileName);
+		}
+		if (MultipartFile[].class.isAssignableFrom(type)) {
+			return (request, response, pathVariables) -> request.getAllMultipartFile();
+		}
+		Annotation[] annotations = parameter.getAnnotations();
+		if (annotations.length == 0) {
+			return (request, response, pathVariables) -> null;
+		}
+		Annotation parameterAnnotation = annotations[0];
+		if (parameterAnnotation instanceof RequestParam) {
+			String name = ((RequestParam) parameterAnnotation).value();
+			return (request, response, pathVariables) -> TypeUtil.convert(request.getParameter(name), type);
+		} else if (parameterAnnotation instanceof RequestHeader) {
+			String name = ((RequestHeader) parameterAnnotation).value();
+			return (request, response, pathVariables) -> TypeUtil.convert(request.getHeader(name), type);
+		} else if (parameterAnnotation instanceof RequestAttribute) {
+			String name = ((RequestAttribute) parameterAnnotation).value();
+			return (request, response, pathVariables) -> {
+				Object attributeValue = request.getAttribute(name);
+				return attributeValue == null ? null : TypeUtil.convert(attributeValue.toString(), type);
+			};
+		} else if (parameterAnnotation instanceof RequestBody) {
+			return (request, response, pathVariables) -> TypeUtil.convert(JsonUtil.convertObj(request.getRequestContext(), type), type);
+		} else if (parameterAnnotation instanceof PathVariable) {
+			String name = ((PathVariable) parameterAnnotation).value();
+			return (request, response, pathVariables) -> TypeUtil.convert(pathVariables.get(name), type);
+		}
+		return (request, response, pathVariables) -> null;
+	}
+
+	@FunctionalInterface
+	private interface ArgumentResolver {
+		Object resolve(HttpRequest request, HttpResponse response, Map<String, String> pathVariables) throws Exception;
+	}
+}
@@ -0,0 +1,154 @@
+package com.zhukai.framework.fast.rest.handle;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按路径分段组织的路由树，启动时由Setup构建，运行时只读。
+ * 每段是字面量节点或{var}变量节点，叶子上按HTTP方法挂处理方法，
+ * 一次遍历同时得到处理方法和路径变量，请求时不再编译正则
+ */
+public class RouteTable {
+
+	private final Node root = new Node();
+
+	/**
+	 * @param path
+	 *            完整的映射路径，如/api/user/{id}
+	 * @param httpMethods
+	 *            允许的请求方法
+	 * @return 已被占用的同路径同方法的处理方法，没有则返回null
+	 */
+	public Method add(String path, String[] httpMethods, Method method) {
+		Node node = root;
+		List<String> variableNames = new ArrayList<>();
+		for (String segment : split(path)) {
+			if (segment.indexOf('{') == -1) {
+				node = node.literals.computeIfAbsent(segment, key -> new Node());
+				continue;
+			}
+			if (!segment.startsWith("{") || !segment.endsWith("}") || segment.length() < 3) {
+				throw new IllegalArgumentException("Path variable must take a whole segment: " + path);
+			}
+			if (node.variable == null) {
+				node.variable = new Node();
+			}
+			node = node.variable;
+			variableNames.add(segment.substring(1, segment.length() - 1));
+		}
+		Route route = new Route(new HandlerInvoker(method), variableNames.toArray(new String[0]));
+		Method previous = null;
+		for (String httpMethod : httpMethods) {
+			Route replaced = node.routes.put(httpMethod, route);
+			if (replaced != null) {
+				previous = replaced.invoker.getMethod();
+			}
+		}
+		return previous;
+	}
+
+	/**
+	 * @return 匹配结果，路径不存在时返回null；路径存在但不支持该请求方法时返回的Match没有处理方法
+	 */
+	public Match match(String httpMethod, String path) {
+		String[] segments = split(path).toArray(new String[0]);
+		String[] values = new String[segments.length];
+		boolean[] pathMatched = new boolean[1];
+		Route route = find(root, segments, 0, 0, values, httpMethod, pathMatched);
+		if (route == null) {
+			return pathMatched[0] ? new Match(null, Collections.emptyMap()) : null;
+		}
+		Map<String, String> pathVariables;
+		if (route.variableNames.length == 0) {
+			pathVariables = Collections.emptyMap();
+		} else {
+			pathVariables = new HashMap<>(route.variableNames.length * 2);
+			for (int i = 0; i < route.variableNames.length; i++) {
+				pathVariables.put(route.variableNames[i], values[i]);
+			}
+		}
+		return new Match(route.invoker, pathVariables);
+	}
+
+	/** 字面量优先，匹配失败再回溯到变量节点 */
+	private static Route find(Node node, String[] segments, int index, int variableIndex, String[] values, String httpMethod, boolean[] pathMatched) {
+		if (index == segments.length) {
+			if (node.routes.isEmpty()) {
+				return null;
+			}
+			pathMatched[0] = true;
+			return node.routes.get(httpMethod);
+		}
+		String segment = segments[index];
+		Node literal = node.literals.get(segment);
+		if (literal != null) {
+			Route route = find(literal, segments, index + 1, variableIndex, values, httpMethod, pathMatched);
+			if (route != null) {
+				return route;
+			}
+		}
+		if (node.variable != null && !segment.isEmpty()) {
+			values[variableIndex] = segment;
+			return find(node.variable, segments, index + 1, variableIndex + 1, values, httpMethod, pathMatched);
+		}
+		return null;
+	}
+
+	/** 按/切分路径，忽略开头的/，保留其余的空段，/a/与/a不是同一个路径 */
+	private static List<String> split(String path) {
+		List<String> segments = new ArrayList<>(8);
+		int start = path.startsWith("/") ? 1 : 0;
+		if (start == path.length()) {
+			return segments;
+		}
+		int end;
+		while ((end = path.indexOf('/', start)) != -1) {
+			segments.add(path.substring(start, end));
+			start = end + 1;
+		}
+		segments.add(path.substring(start));
+		return segments;
+	}
+
+	private static class Node {
+		private final Map<String, Node> literals = new HashMap<>();
+		private Node variable;
+		private final Map<String, Route> routes = new LinkedHashMap<>(4);
+	}
+
+	private static class Route {
+		private final HandlerInvoker invoker;
+		private final String[] variableNames;
+
+		private Route(HandlerInvoker invoker, String[] variableNames) {
+			this.invoker = invoker;
+			this.variableNames = variableNames;
+		}
+	}
+
+	public static class Match {
+		private final HandlerInvoker invoker;
+		private final Map<String, String> pathVariables;
+
+		private Match(HandlerInvoker invoker, Map<String, String> pathVariables) {
+			this.invoker = invoker;
+			this.pathVariables = pathVariables;
+		}
+
+		/**
+		 * @return 处理方法的调用器，路径存在但请求方法不被允许时为null
+		 */
+		public HandlerInvoker getInvoker() {
+			return invoker;
+		}
+
+		public Map<String, String> getPathVariables() {
+			return pathVariables;
+		}
+	}
+}
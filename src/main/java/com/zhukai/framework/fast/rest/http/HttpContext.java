@@ -51,6 +51,15 @@ public class HttpContext {
 		HttpContext.response.set(response);
 	}
 
+	/**
+	 * 请求处理完后清除当前线程的request、response和事务，线程池复用线程时不会带到下一个请求
+	 */
+	public static void clear() {
+		request.remove();
+		response.remove();
+		transaction.remove();
+	}
+
 	public static Session getSession(String sessionId) {
 		return sessions.computeIfAbsent(sessionId, Session::new);
 	}
@@ -1,10 +1,10 @@
 package com.zhukai.framework.fast.rest.http;
 
 import com.zhukai.framework.fast.rest.Constants;
+import com.zhukai.framework.fast.rest.FastRestApplication;
 import com.zhukai.framework.fast.rest.common.HttpHeaderType;
+import com.zhukai.framework.fast.rest.common.HttpStatus;
 import com.zhukai.framework.fast.rest.http.reader.AbstractHttpReader;
-import com.zhukai.framework.fast.rest.http.reader.HttpReader;
-import com.zhukai.framework.fast.rest.http.reader.HttpReaderNIO;
 import com.zhukai.framework.fast.rest.http.request.HttpRequest;
 import com.zhukai.framework.fast.rest.http.request.HttpRequestBuilder;
 import com.zhukai.framework.fast.rest.http.request.HttpRequestDirector;
@@ -16,10 +16,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.net.ssl.SSLException;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.Socket;
-import java.nio.channels.SocketChannel;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
@@ -30,26 +31,12 @@ public class HttpParser {
 	private static final Logger logger = LoggerFactory.getLogger(HttpParser.class);
 	private static final Properties mimeTypes = new Properties();
 
-	public static HttpRequest createRequest(Socket socket) {
-		try {
-			InputStream inputStream = socket.getInputStream();
-			return directorRequest(new HttpReader(inputStream));
-		} catch (IOException e) {
-			logger.error("Create request error", e);
-		}
-		return null;
-	}
-
-	public static HttpRequest createRequest(SocketChannel channel) {
-		return directorRequest(new HttpReaderNIO(channel));
-	}
-
-	private static HttpRequest directorRequest(AbstractHttpReader readerFactory) {
-		RequestBuilder requestBuilder = new HttpRequestBuilder(readerFactory);
+	public static HttpRequest createRequest(AbstractHttpReader httpReader) {
+		RequestBuilder requestBuilder = new HttpRequestBuilder(httpReader);
 		HttpRequestDirector director = new HttpRequestDirector(requestBuilder);
 		try {
 			return director.createRequest();
-		} catch (SSLException se) {
+		} catch (SSLException | SocketException | SocketTimeoutException se) {
 			logger.debug("Create request error", se);
 		} catch (Exception e) {
 			logger.error("Create request error", e);
@@ -57,10 +44,49 @@ public class HttpParser {
 		return null;
 	}
 
+	public static boolean isKeepAlive(HttpRequest request) {
+		String connection = request.getHeader(HttpHeaderType.CONNECTION);
+		if ("close".equalsIgnoreCase(connection)) {
+			return false;
+		}
+		return "keep-alive".equalsIgnoreCase(connection) || "HTTP/1.1".equals(request.getProtocol());
+	}
+
+	public static boolean isKeepAlive(HttpResponse response) {
+		return "keep-alive".equalsIgnoreCase(response.getHeader(HttpHeaderType.CONNECTION));
+	}
+
+	/**
+	 * 处理线程池已满时直接返回的503响应，响应后关闭连接
+	 */
+	public static byte[] createServiceUnavailable(String protocol) throws IOException {
+		HttpResponse response = new HttpResponse();
+		response.setProtocol(protocol == null ? "HTTP/1.1" : protocol);
+		response.setStatus(HttpStatus.ServiceUnavailable);
+		response.addHeader(HttpHeaderType.RETRY_AFTER, String.valueOf(FastRestApplication.getServerConfig().getRetryAfter()));
+		response.addHeader(HttpHeaderType.CONNECTION, "close");
+		response.setContentLength(0);
+		return parseHttpString(response).getBytes(response.getCharacterEncoding());
+	}
+
+	/**
+	 * 请求体过大时直接返回的413响应，请求体不再读取，响应后关闭连接
+	 */
+	public static byte[] createPayloadTooLarge(String protocol) throws IOException {
+		HttpResponse response = new HttpResponse();
+		response.setProtocol(protocol == null ? "HTTP/1.1" : protocol);
+		response.setStatus(HttpStatus.PayloadTooLarge);
+		response.addHeader(HttpHeaderType.CONNECTION, "close");
+		response.setContentLength(0);
+		return parseHttpString(response).getBytes(response.getCharacterEncoding());
+	}
+
 	public static String parseHttpString(HttpResponse response) throws IOException {
 		StringBuilder sb = new StringBuilder();
 		sb.append(response.getProtocol()).append(" ").append(response.getStatusCode()).append(" ").append(response.getStatusCodeStr()).append(Constants.HTTP_LINE_SEPARATOR);
-		if (response.getResult() != null && response.getResult() instanceof InputStream && response.getHeader(HttpHeaderType.CONTENT_LENGTH) == null) {
+		if (response.getResult() instanceof File && response.getHeader(HttpHeaderType.CONTENT_LENGTH) == null) {
+			response.setContentLength(((File) response.getResult()).length());
+		} else if (response.getResult() instanceof InputStream && response.getHeader(HttpHeaderType.CONTENT_LENGTH) == null) {
 			int contentLength = ((InputStream) response.getResult()).available();
 			response.setContentLength(contentLength);
 		} else if (response.getResult() != null && !(response.getResult() instanceof InputStream) && !TypeUtil.isBasicType(response.getResult())) {
@@ -98,7 +98,7 @@ public class HttpResponse {
 		charset = s;
 	}
 
-	public void setContentLength(int length) {
+	public void setContentLength(long length) {
 		headers.put(HttpHeaderType.CONTENT_LENGTH, String.valueOf(length));
 	}
 
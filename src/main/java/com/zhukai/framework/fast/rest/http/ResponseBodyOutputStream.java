@@ -0,0 +1,153 @@
+package com.zhukai.framework.fast.rest.http;
+
+import com.zhukai.framework.fast.rest.common.HttpHeaderType;
+import com.zhukai.framework.fast.rest.util.BufferPool;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 把响应体写进缓冲池的直接缓冲。
+ * 响应体不超过MAX_BUFFERED_SIZE时在close时算出Content-Length后一起发送；
+ * 超过后（仅HTTP/1.1）先发送响应头，改用chunked编码边写边发。
+ * 每个缓冲头部预留chunk长度、尾部预留CRLF，发送chunk时不需要额外拷贝。
+ * current和buffered中的缓冲属于本对象，交给Sink之前先移出，之后无论写出成功与否都由Sink归还
+ */
+public class ResponseBodyOutputStream extends OutputStream {
+	private static final int MAX_BUFFERED_SIZE = 64 * 1024;
+	private static final int CHUNK_PREFIX_SIZE = 6;// 4位十六进制长度加CRLF
+	private static final int CHUNK_SUFFIX_SIZE = 2;
+	private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes();
+	private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes();
+
+	private final HttpResponse response;
+	private final Sink sink;
+	private final boolean chunkedAllowed;
+	private final List<ByteBuffer> buffered = new ArrayList<>();
+	private ByteBuffer current;
+	private long length;
+	private boolean chunked;
+	private boolean closed;
+
+	/**
+	 * 响应数据的去处，write得到的缓冲来自BufferPool，由Sink负责归还
+	 */
+	public interface Sink {
+		void writeHeader(byte[] header) throws IOException;
+
+		void write(ByteBuffer buffer) throws IOException;
+	}
+
+	public ResponseBodyOutputStream(HttpResponse response, Sink sink) {
+		this.response = response;
+		this.sink = sink;
+		this.chunkedAllowed = "HTTP/1.1".equals(response.getProtocol());
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[]{(byte) b}, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (closed) {
+			throw new IOException("Stream closed");
+		}
+		while (len > 0) {
+			if (current == null) {
+				current = BufferPool.acquire();
+				current.position(CHUNK_PREFIX_SIZE);
+			}
+			int size = Math.min(len, current.capacity() - CHUNK_SUFFIX_SIZE - current.position());
+			current.put(b, off, size);
+			off += size;
+			len -= size;
+			length += size;
+			if (current.capacity() - CHUNK_SUFFIX_SIZE == current.position()) {
+				ByteBuffer full = current;
+				current = null;
+				bufferFull(full);
+			}
+		}
+	}
+
+	/**
+	 * 发送剩余数据，非chunked时在这里确定Content-Length并发送响应头
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		if (chunked) {
+			ByteBuffer last = current;
+			current = null;
+			if (last != null && last.position() > CHUNK_PREFIX_SIZE) {
+				sendChunk(last);
+			} else if (last != null) {
+				BufferPool.release(last);
+			}
+			ByteBuffer lastChunk = BufferPool.acquire();
+			lastChunk.put(LAST_CHUNK).flip();
+			sink.write(lastChunk);
+			return;
+		}
+		if (current != null) {
+			buffered.add(current);
+			current = null;
+		}
+		response.setContentLength(length);
+		sink.writeHeader(HttpParser.parseHttpString(response).getBytes(response.getCharacterEncoding()));
+		while (!buffered.isEmpty()) {
+			ByteBuffer buffer = buffered.remove(0);
+			buffer.limit(buffer.position()).position(CHUNK_PREFIX_SIZE);
+			sink.write(buffer);
+		}
+	}
+
+	/**
+	 * 写出失败时归还还属于本对象（还没交给Sink）的缓冲
+	 */
+	public void discard() {
+		closed = true;
+		buffered.forEach(BufferPool::release);
+		buffered.clear();
+		if (current != null) {
+			BufferPool.release(current);
+			current = null;
+		}
+	}
+
+	private void bufferFull(ByteBuffer buffer) throws IOException {
+		if (chunked) {
+			sendChunk(buffer);
+			return;
+		}
+		buffered.add(buffer);
+		if (chunkedAllowed && length > MAX_BUFFERED_SIZE) {
+			chunked = true;
+			response.addHeader(HttpHeaderType.TRANSFER_ENCODING, "chunked");
+			sink.writeHeader(HttpParser.parseHttpString(response).getBytes(response.getCharacterEncoding()));
+			while (!buffered.isEmpty()) {
+				sendChunk(buffered.remove(0));
+			}
+		}
+	}
+
+	/** buffer已从current和buffered中移出，交给Sink */
+	private void sendChunk(ByteBuffer buffer) throws IOException {
+		int size = buffer.position() - CHUNK_PREFIX_SIZE;
+		for (int i = 3; i >= 0; i--) {
+			buffer.put(3 - i, HEX_DIGITS[(size >> (i * 4)) & 0xF]);
+		}
+		buffer.put(4, (byte) '\r').put(5, (byte) '\n');
+		buffer.put((byte) '\r').put((byte) '\n');
+		buffer.flip();
+		sink.write(buffer);
+	}
+}
@@ -1,8 +1,6 @@
 package com.zhukai.framework.fast.rest.http.reader;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 
 public abstract class AbstractHttpReader {
 	private static final String DEFAULT_PARSE_CHARSET = "utf-8";
@@ -13,14 +11,8 @@ public abstract class AbstractHttpReader {
 		return new String(bytes, 0, length, DEFAULT_PARSE_CHARSET);
 	}
 
-	public String readLimitSize(int size) throws IOException {
-		byte[] bytes = readByteArrayLimitSize(size);
-		return new String(bytes, DEFAULT_PARSE_CHARSET);
-	}
-
-	public InputStream readFileInputStream(int size) throws IOException {
-		byte[] bytes = readByteArrayLimitSize(size);
-		return new ByteArrayInputStream(bytes);
+	public byte[] readBytes(int size) throws IOException {
+		return readByteArrayLimitSize(size);
 	}
 
 	protected abstract byte[] readByteArrayLimitSize(int size) throws IOException;
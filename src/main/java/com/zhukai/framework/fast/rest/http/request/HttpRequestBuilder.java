@@ -12,10 +12,13 @@ import org.apache.commons.fileupload.disk.DiskFileItemFactory;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
 
 import javax.servlet.http.Cookie;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.function.BiConsumer;
 
 public class HttpRequestBuilder implements RequestBuilder {
 	private AbstractHttpReader httpReader;
@@ -32,20 +35,10 @@ public class HttpRequestBuilder implements RequestBuilder {
 		if (startLineArr.length < 3) {
 			return null;
 		}
-		String url = URLDecoder.decode(startLineArr[1], FastRestApplication.getServerConfig().getCharset());
-		String[] pathArr = url.split("\\?");
-		String path = pathArr[0];
 		request = new HttpRequest();
 		request.setMethod(startLineArr[0]);
 		request.setProtocol(startLineArr[2]);
-		request.setPath(path);
-		if (pathArr.length > 1) {
-			String[] pathParameter = pathArr[1].split("&");
-			for (String param : pathParameter) {
-				String[] keyValue = param.split("=");
-				request.putParameter(keyValue[0], keyValue.length > 1 ? keyValue[1] : "");
-			}
-		}
+		fillUrl(request, startLineArr[1], FastRestApplication.getServerConfig().getCharset());
 		return request;
 	}
 
@@ -53,16 +46,11 @@ public class HttpRequestBuilder implements RequestBuilder {
 	public HttpRequest buildHead() throws IOException {
 		String headLine = httpReader.readLine();
 		while (!headLine.trim().equals("")) {
-			if (headLine.startsWith("Cookie")) {
-				String cookieString = headLine.substring(headLine.indexOf(':') + 2);
-				String[] cookieArr = cookieString.split(";");
-				for (String cookie : cookieArr) {
-					String[] keyValue = cookie.split("=");
-					request.addCookie(new Cookie(keyValue[0].trim(), keyValue[1].trim()));
-				}
+			String headerKey = headLine.substring(0, headLine.indexOf(':'));
+			String headerValue = headLine.substring(headLine.indexOf(':') + 1).trim();
+			if (headerKey.equalsIgnoreCase("Cookie")) {
+				fillCookies(request, headerValue);
 			} else {
-				String headerKey = headLine.substring(0, headLine.indexOf(':'));
-				String headerValue = headLine.substring(headLine.indexOf(':') + 2);
 				request.putHeader(headerKey, headerValue);
 			}
 			headLine = httpReader.readLine();
@@ -73,32 +61,70 @@ public class HttpRequestBuilder implements RequestBuilder {
 	@Override
 	public HttpRequest buildBody() throws IOException, FileUploadException {
 		if (request.getMethod().equals(RequestType.POST) || request.getMethod().equals(RequestType.DELETE) || request.getMethod().equals(RequestType.PUT)) {
-			String contentType = request.getHeader(HttpHeaderType.CONTENT_TYPE);
-			int contentLength = Integer.parseInt(request.getHeader(HttpHeaderType.CONTENT_LENGTH).trim());
-			handleRequestBody(contentType, contentLength);
+			// 阻塞读取不解码chunked，直接关闭连接，避免把chunk数据当成下一个请求
+			if (request.getHeader(HttpHeaderType.TRANSFER_ENCODING) != null) {
+				throw new IOException("Transfer-Encoding is not supported: " + request.getHeader(HttpHeaderType.TRANSFER_ENCODING));
+			}
+			int contentLength = request.getContentLength();
+			long maxBodySize = FastRestApplication.getServerConfig().getMaxRequestBodySize();
+			if (contentLength > maxBodySize) {
+				throw new IOException("Request body is larger than " + maxBodySize + " bytes: " + contentLength);
+			}
+			if (contentLength > 0) {
+				fillBody(request, httpReader.readBytes(contentLength));
+			}
 		}
 		return request;
 	}
 
-	private void handleRequestBody(String contentType, int contentLength) throws FileUploadException, IOException {
+	static void fillUrl(HttpRequest request, String url, String charset) throws UnsupportedEncodingException {
+		int queryIndex = url.indexOf('?');
+		String path = queryIndex == -1 ? url : url.substring(0, queryIndex);
+		request.setPath(URLDecoder.decode(path, charset));
+		if (queryIndex != -1) {
+			splitParameters(url.substring(queryIndex + 1), charset, request::putParameter);
+		}
+	}
+
+	static void fillCookies(HttpRequest request, String cookieString) {
+		for (String cookie : cookieString.split(";")) {
+			int index = cookie.indexOf('=');
+			if (index > 0) {
+				request.addCookie(new Cookie(cookie.substring(0, index).trim(), cookie.substring(index + 1).trim()));
+			}
+		}
+	}
+
+	static void fillBody(HttpRequest request, byte[] body) throws IOException, FileUploadException {
+		String contentType = request.getContentType();
+		if (contentType == null) {
+			return;
+		}
 		if (contentType.startsWith("multipart/form-data")) {
-			InputStream inputStream = httpReader.readFileInputStream(contentLength);
-			MultiFileRequest fileRequest = new MultiFileRequest(inputStream, contentType, contentLength);
+			MultiFileRequest fileRequest = new MultiFileRequest(new ByteArrayInputStream(body), contentType, body.length);
 			ServletFileUpload upload = new ServletFileUpload(new DiskFileItemFactory());
 			List<FileItem> fileItems = upload.parseRequest(fileRequest);
 			fileItems.forEach(item -> request.addMultipartFile(new MultipartFile(item)));
 			return;
 		}
-		String bodyContext = httpReader.readLimitSize(contentLength);
+		String bodyContext = new String(body, StandardCharsets.UTF_8);
 		if (contentType.startsWith("application/x-www-form-urlencoded")) {
-			String[] paramStringArr = bodyContext.split("&");
-			for (String paramString : paramStringArr) {
-				String[] param = paramString.split("=");
-				request.setAttribute(param[0], param[1]);
-			}
+			splitParameters(bodyContext, StandardCharsets.UTF_8.name(), request::setAttribute);
 		} else if (contentType.startsWith("text/plain") || contentType.startsWith("application/json")) {
 			request.setRequestContext(bodyContext);
 		}
 	}
 
+	private static void splitParameters(String paramString, String charset, BiConsumer<String, String> consumer) throws UnsupportedEncodingException {
+		for (String param : paramString.split("&")) {
+			if (param.isEmpty()) {
+				continue;
+			}
+			int index = param.indexOf('=');
+			String key = index == -1 ? param : param.substring(0, index);
+			String value = index == -1 ? "" : param.substring(index + 1);
+			consumer.accept(URLDecoder.decode(key, charset), URLDecoder.decode(value, charset));
+		}
+	}
+
 }
@@ -0,0 +1,284 @@
+package com.zhukai.framework.fast.rest.http.request;
+
+import com.zhukai.framework.fast.rest.Constants;
+import com.zhukai.framework.fast.rest.common.HttpHeaderType;
+import com.zhukai.framework.fast.rest.exception.HttpParseException;
+import com.zhukai.framework.fast.rest.exception.PayloadTooLargeException;
+import org.apache.commons.fileupload.FileUploadException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 可恢复的HTTP请求解析器，挂在SelectionKey上，每次读到多少字节就解析多少，
+ * 请求行、请求头和请求体都完整后才返回HttpRequest
+ */
+public class HttpRequestParser {
+	private static final int INITIAL_LINE_SIZE = 256;
+	private static final int MAX_CHUNKED_BODY_SIZE = Integer.MAX_VALUE - 8;
+
+	private enum State {
+		REQUEST_LINE, HEADERS, BODY, CHUNK_SIZE, CHUNK_DATA, CHUNK_END, TRAILERS
+	}
+
+	private final String charset;
+	private final long maxBodySize;
+	private State state = State.REQUEST_LINE;
+	private byte[] line = new byte[INITIAL_LINE_SIZE];
+	private int lineLength;
+	private int headerSize;
+	private HttpRequest request;
+	private byte[] body;
+	private int bodyLength;
+	private long chunkRemaining;
+
+	/**
+	 * @param maxBodySize
+	 *            请求体的最大字节数，Content-Length或chunked请求体累计超过时抛出PayloadTooLargeException
+	 */
+	public HttpRequestParser(String charset, long maxBodySize) {
+		this.charset = charset;
+		this.maxBodySize = maxBodySize;
+	}
+
+	/**
+	 * @param buffer
+	 *            已flip的读缓冲，一个请求完整后立即返回，剩余字节留在buffer中
+	 * @return 完整的请求，数据不足时返回null
+	 */
+	public HttpRequest parse(ByteBuffer buffer) throws HttpParseException {
+		while (buffer.hasRemaining()) {
+			if (state == State.BODY) {
+				int size = Math.min(buffer.remaining(), body.length - bodyLength);
+				buffer.get(body, bodyLength, size);
+				bodyLength += size;
+				if (bodyLength == body.length) {
+					return complete();
+				}
+				continue;
+			}
+			if (state == State.CHUNK_DATA) {
+				int size = (int) Math.min(buffer.remaining(), chunkRemaining);
+				buffer.get(body, bodyLength, size);
+				bodyLength += size;
+				chunkRemaining -= size;
+				if (chunkRemaining == 0) {
+					state = State.CHUNK_END;
+				}
+				continue;
+			}
+			if (!readLine(buffer)) {
+				return null;
+			}
+			HttpRequest completed = null;
+			switch (state) {
+				case REQUEST_LINE:
+					if (lineLength > 0) {
+						parseRequestLine();
+						state = State.HEADERS;
+					}
+					break;
+				case HEADERS:
+					if (lineLength > 0) {
+						parseHeader();
+					} else {
+						completed = startBody();
+					}
+					break;
+				case CHUNK_SIZE:
+					startChunk();
+					break;
+				case CHUNK_END:
+					if (lineLength > 0) {
+						throw new HttpParseException("Bad chunk: missing CRLF after chunk data");
+					}
+					headerSize = 0;
+					state = State.CHUNK_SIZE;
+					break;
+				default:
+					// 忽略trailer头，空行表示请求结束
+					if (lineLength == 0) {
+						completed = complete();
+					}
+			}
+			lineLength = 0;
+			if (completed != null) {
+				return completed;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return 是否正处在两个请求之间（没有解析到一半的数据）
+	 */
+	public boolean isIdle() {
+		return state == State.REQUEST_LINE && lineLength == 0;
+	}
+
+	private boolean readLine(ByteBuffer buffer) throws HttpParseException {
+		while (buffer.hasRemaining()) {
+			byte b = buffer.get();
+			if (b == '\n') {
+				if (lineLength > 0 && line[lineLength - 1] == '\r') {
+					lineLength--;
+				}
+				return true;
+			}
+			if (++headerSize > Constants.MAX_HEADER_SIZE) {
+				throw new HttpParseException("Request header is larger than " + Constants.MAX_HEADER_SIZE + " bytes");
+			}
+			if (lineLength == line.length) {
+				line = Arrays.copyOf(line, line.length * 2);
+			}
+			line[lineLength++] = b;
+		}
+		return false;
+	}
+
+	private void parseRequestLine() throws HttpParseException {
+		int methodEnd = indexOf(' ', 0);
+		int urlEnd = methodEnd == -1 ? -1 : indexOf(' ', methodEnd + 1);
+		if (methodEnd <= 0 || urlEnd <= methodEnd + 1) {
+			throw new HttpParseException("Bad request line: " + new String(line, 0, lineLength, StandardCharsets.ISO_8859_1));
+		}
+		request = new HttpRequest();
+		request.setMethod(new String(line, 0, methodEnd, StandardCharsets.ISO_8859_1));
+		request.setProtocol(new String(line, urlEnd + 1, lineLength - urlEnd - 1, StandardCharsets.ISO_8859_1));
+		try {
+			HttpRequestBuilder.fillUrl(request, new String(line, methodEnd + 1, urlEnd - methodEnd - 1, charset), charset);
+		} catch (IOException | IllegalArgumentException e) {
+			throw new HttpParseException("Bad request url", e);
+		}
+	}
+
+	private void parseHeader() throws HttpParseException {
+		int colon = indexOf(':', 0);
+		if (colon <= 0) {
+			throw new HttpParseException("Bad request header: " + new String(line, 0, lineLength, StandardCharsets.ISO_8859_1));
+		}
+		int valueStart = colon + 1;
+		while (valueStart < lineLength && isWhitespace(line[valueStart])) {
+			valueStart++;
+		}
+		int valueEnd = lineLength;
+		while (valueEnd > valueStart && isWhitespace(line[valueEnd - 1])) {
+			valueEnd--;
+		}
+		String key = new String(line, 0, colon, StandardCharsets.ISO_8859_1);
+		String value = new String(line, valueStart, valueEnd - valueStart, StandardCharsets.UTF_8);
+		if (key.equalsIgnoreCase("Cookie")) {
+			HttpRequestBuilder.fillCookies(request, value);
+		} else {
+			request.putHeader(key, value);
+		}
+	}
+
+	/**
+	 * 请求头结束后决定如何读取请求体，Transfer-Encoding优先于Content-Length
+	 *
+	 * @return 没有请求体时直接返回完整的请求
+	 */
+	private HttpRequest startBody() throws HttpParseException {
+		String transferEncoding = request.getHeader(HttpHeaderType.TRANSFER_ENCODING);
+		if (transferEncoding != null) {
+			if (!transferEncoding.trim().toLowerCase().endsWith("chunked")) {
+				throw new HttpParseException("Unsupported Transfer-Encoding: " + transferEncoding);
+			}
+			body = new byte[0];
+			headerSize = 0;
+			state = State.CHUNK_SIZE;
+			return null;
+		}
+		int contentLength = getContentLength();
+		if (contentLength <= 0) {
+			return complete();
+		}
+		if (contentLength > maxBodySize) {
+			throw new PayloadTooLargeException("Request body is larger than " + maxBodySize + " bytes: " + contentLength);
+		}
+		body = new byte[contentLength];
+		state = State.BODY;
+		return null;
+	}
+
+	private void startChunk() throws HttpParseException {
+		int end = indexOf(';', 0);
+		if (end == -1) {
+			end = lineLength;
+		}
+		while (end > 0 && isWhitespace(line[end - 1])) {
+			end--;
+		}
+		if (end == 0 || end > 15) {
+			throw new HttpParseException("Bad chunk size: " + new String(line, 0, lineLength, StandardCharsets.ISO_8859_1));
+		}
+		long size = 0;
+		for (int i = 0; i < end; i++) {
+			int digit = Character.digit(line[i], 16);
+			if (digit == -1) {
+				throw new HttpParseException("Bad chunk size: " + new String(line, 0, lineLength, StandardCharsets.ISO_8859_1));
+			}
+			size = size * 16 + digit;
+		}
+		headerSize = 0;
+		if (size == 0) {
+			state = State.TRAILERS;
+			return;
+		}
+		if (bodyLength + size > Math.min(maxBodySize, MAX_CHUNKED_BODY_SIZE)) {
+			throw new PayloadTooLargeException("Request body is larger than " + maxBodySize + " bytes");
+		}
+		if (bodyLength + size > body.length) {
+			body = Arrays.copyOf(body, (int) Math.min(Math.min(maxBodySize, MAX_CHUNKED_BODY_SIZE), Math.max(bodyLength + size, body.length * 2L)));
+		}
+		chunkRemaining = size;
+		state = State.CHUNK_DATA;
+	}
+
+	private int getContentLength() throws HttpParseException {
+		try {
+			return request.getContentLength();
+		} catch (NumberFormatException e) {
+			throw new HttpParseException("Bad Content-Length", e);
+		}
+	}
+
+	private HttpRequest complete() throws HttpParseException {
+		HttpRequest completed = request;
+		byte[] completedBody = body;
+		if (completedBody != null && bodyLength < completedBody.length) {
+			// chunked请求体按实际读到的长度截取
+			completedBody = bodyLength == 0 ? null : Arrays.copyOf(completedBody, bodyLength);
+		}
+		state = State.REQUEST_LINE;
+		headerSize = 0;
+		request = null;
+		body = null;
+		bodyLength = 0;
+		chunkRemaining = 0;
+		if (completedBody != null) {
+			try {
+				HttpRequestBuilder.fillBody(completed, completedBody);
+			} catch (IOException | FileUploadException e) {
+				throw new HttpParseException("Bad request body", e);
+			}
+		}
+		return completed;
+	}
+
+	private int indexOf(char c, int from) {
+		for (int i = from; i < lineLength; i++) {
+			if (line[i] == c) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\t';
+	}
+}
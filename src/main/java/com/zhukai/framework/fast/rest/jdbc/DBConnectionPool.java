@@ -2,10 +2,18 @@ package com.zhukai.framework.fast.rest.jdbc;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.LongAdder;
 
 import org.slf4j.Logger;
@@ -13,34 +21,116 @@ import org.slf4j.LoggerFactory;
 
 import com.zhukai.framework.fast.rest.config.DataSource;
 import com.zhukai.framework.fast.rest.exception.DBConnectTimeoutException;
+import com.zhukai.framework.fast.rest.factory.ExecutorFactory;
 
+/**
+ * 数据库连接池。
+ * 借出连接前先取得公平信号量，借出的连接数不会超过maxConn，等待按先后顺序、有超时；
+ * 空闲连接后进先出，长时间未用的连接借出前校验，超过maxLifetime的连接关闭重建；
+ * 后台任务定期回收超时的空闲连接、校验保活、补足minConn，并检测借出后长时间未归还的连接。
+ * 每个连接按SQL缓存最近使用的statementCacheSize个PreparedStatement，淘汰时关闭
+ */
 public class DBConnectionPool {
 	private static final Logger logger = LoggerFactory.getLogger(DBConnectionPool.class);
+	private static final long ALIVE_BYPASS_WINDOW = 500L;// 刚用过的连接借出时不再校验（毫秒）
+	private static final long HOUSEKEEPING_PERIOD = 30000L;
 
-	private static LongAdder checkOutSize = new LongAdder();
-	private static BlockingQueue<Connection> freeConnPool = new LinkedBlockingQueue<>();
+	private static final BlockingDeque<PooledConnection> idleConnections = new LinkedBlockingDeque<>();
+	private static final Map<Connection, PooledConnection> borrowedConnections = new ConcurrentHashMap<>();
+	private static final AtomicInteger totalConnections = new AtomicInteger();
+	private static final LongAdder statementCacheHits = new LongAdder();
+	private static final LongAdder statementCacheMisses = new LongAdder();
+	private static Semaphore permits;
 	private static DataSource dataSource;
 
-	public static void freeConnection(Connection con) throws InterruptedException {
+	public static void init(DataSource source) throws Exception {
+		dataSource = source;
+		permits = new Semaphore(source.getMaxConn(), true);
+		Class.forName(source.getDriverClass());
+		for (int i = 0; i < Math.min(source.getMinConn(), source.getMaxConn()); i++) {
+			idleConnections.offerLast(createConnection());
+		}
+		ExecutorFactory.getScheduledTaskExecutor().scheduleWithFixedDelay(DBConnectionPool::housekeeping, HOUSEKEEPING_PERIOD, HOUSEKEEPING_PERIOD, TimeUnit.MILLISECONDS);
+	}
+
+	public static Connection getConnection() throws Exception {
+		if (!permits.tryAcquire(dataSource.getTimeout(), TimeUnit.MILLISECONDS)) {
+			throw new DBConnectTimeoutException("Get connection timeout after " + dataSource.getTimeout() + "ms, active: " + getActiveCount() + ", idle: " + getIdleCount());
+		}
+		try {
+			PooledConnection pooledConnection;
+			while ((pooledConnection = idleConnections.pollFirst()) != null) {
+				long now = System.currentTimeMillis();
+				if (pooledConnection.isExpired(now, dataSource.getMaxLifetime())) {
+					closeConnection(pooledConnection);
+				} else if (now - pooledConnection.getLastAliveTime() > ALIVE_BYPASS_WINDOW && !isValid(pooledConnection)) {
+					logger.warn("Close broken connection: {}", pooledConnection.getConnection());
+					closeConnection(pooledConnection);
+				} else {
+					break;
+				}
+			}
+			if (pooledConnection == null) {
+				pooledConnection = createConnection();
+			}
+			pooledConnection.borrow(dataSource.getLeakDetectionThreshold() > 0);
+			borrowedConnections.put(pooledConnection.getConnection(), pooledConnection);
+			return pooledConnection.getConnection();
+		} catch (Exception e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * 归还连接，未提交的事务回滚，已关闭或无法重置的连接直接丢弃
+	 */
+	public static void freeConnection(Connection con) {
+		PooledConnection pooledConnection = borrowedConnections.remove(con);
+		if (pooledConnection == null) {
+			logger.warn("Connection is not borrowed from pool or has been freed: {}", con);
+			return;
+		}
+		// 放回空闲队列前取出，之后连接可能已被其他线程借走
+		List<Runnable> releaseActions = pooledConnection.takeReleaseActions();
 		try {
-			con.setAutoCommit(true);
+			if (con.isClosed()) {
+				closeConnection(pooledConnection);
+				return;
+			}
+			if (!con.getAutoCommit()) {
+				con.rollback();
+				con.setAutoCommit(true);
+			}
+			pooledConnection.giveBack();
+			if (pooledConnection.isExpired(System.currentTimeMillis(), dataSource.getMaxLifetime())) {
+				closeConnection(pooledConnection);
+			} else {
+				idleConnections.offerFirst(pooledConnection);
+			}
 		} catch (SQLException e) {
-			logger.error("Set autoCommit error", e);
+			logger.warn("Reset connection error, close it", e);
+			closeConnection(pooledConnection);
+		} finally {
+			permits.release();
+			runReleaseActions(releaseActions);
 		}
-		freeConnPool.put(con);
-		checkOutSize.add(-1);
 	}
 
-	public static void init(DataSource source) throws Exception {
-		dataSource = source;
-		Class.forName(source.getDriverClass());
-		for (int i = 0; i < source.getMinConn(); i++) {
-			Connection connection = DriverManager.getConnection(source.getUrl(), source.getUsername(), source.getPassword());
-			freeConnPool.put(connection);
+	/**
+	 * 连接归还时执行action，事务中的连接在提交或回滚之后归还，可以用来在事务结束后清除缓存。
+	 * 连接不是从连接池借出的时立即执行
+	 */
+	public static void runOnRelease(Connection conn, Runnable action) {
+		PooledConnection pooledConnection = borrowedConnections.get(conn);
+		if (pooledConnection == null) {
+			action.run();
+			return;
 		}
+		pooledConnection.addReleaseAction(action);
 	}
 
-	public static void commit(Connection conn) throws SQLException, InterruptedException {
+	public static void commit(Connection conn) throws SQLException {
 		try {
 			conn.commit();
 		} catch (SQLException ex) {
@@ -51,20 +141,164 @@ public class DBConnectionPool {
 		}
 	}
 
-	public static Connection getConnection() throws Exception {
-		if (!freeConnPool.isEmpty()) {
-			checkOutSize.add(1);
-			return freeConnPool.take();
-		} else if (checkOutSize.intValue() < dataSource.getMaxConn()) {
-			Connection connection = DriverManager.getConnection(dataSource.getUrl(), dataSource.getUsername(), dataSource.getPassword());
-			checkOutSize.add(1);
-			return connection;
-		} else {
-			Connection connection = freeConnPool.poll(dataSource.getTimeout(), TimeUnit.MILLISECONDS);
-			if (connection == null) {
-				throw new DBConnectTimeoutException();
+	/**
+	 * 从连接的语句缓存中取PreparedStatement，没有时创建并放入缓存。
+	 * 用完后调用releaseStatement，不要直接close
+	 */
+	public static PreparedStatement prepareStatement(Connection conn, String sql) throws SQLException {
+		PooledConnection pooledConnection = borrowedConnections.get(conn);
+		if (pooledConnection == null || dataSource.getStatementCacheSize() <= 0) {
+			return conn.prepareStatement(sql);
+		}
+		PreparedStatement statement = pooledConnection.getCachedStatement(sql);
+		if (statement != null) {
+			statementCacheHits.increment();
+			return statement;
+		}
+		statementCacheMisses.increment();
+		statement = conn.prepareStatement(sql);
+		pooledConnection.cacheStatement(sql, statement);
+		return statement;
+	}
+
+	/**
+	 * 缓存中的语句只清空参数和批量留给下次使用，其余的关闭
+	 */
+	public static void releaseStatement(Connection conn, String sql, PreparedStatement statement) throws SQLException {
+		PooledConnection pooledConnection = borrowedConnections.get(conn);
+		if (pooledConnection == null || !pooledConnection.isCached(sql, statement)) {
+			statement.close();
+			return;
+		}
+		try {
+			statement.clearParameters();
+			statement.clearBatch();
+		} catch (SQLException e) {
+			pooledConnection.removeStatement(sql);
+			throw e;
+		}
+	}
+
+	public static long getStatementCacheHits() {
+		return statementCacheHits.sum();
+	}
+
+	public static long getStatementCacheMisses() {
+		return statementCacheMisses.sum();
+	}
+
+	/** 已借出的连接数 */
+	public static int getActiveCount() {
+		return borrowedConnections.size();
+	}
+
+	public static int getIdleCount() {
+		return idleConnections.size();
+	}
+
+	private static PooledConnection createConnection() throws SQLException {
+		Properties info = new Properties();
+		if (dataSource.getUsername() != null) {
+			info.setProperty("user", dataSource.getUsername());
+		}
+		if (dataSource.getPassword() != null) {
+			info.setProperty("password", dataSource.getPassword());
+		}
+		String url = dataSource.getUrl();
+		// MySQL驱动开启rewriteBatchedStatements后才把批量插入合并成多行INSERT一次发送，url中没有指定时默认开启
+		if (url.startsWith("jdbc:mysql:") && !url.contains("rewriteBatchedStatements")) {
+			info.setProperty("rewriteBatchedStatements", "true");
+		}
+		Connection connection = DriverManager.getConnection(url, info);
+		totalConnections.incrementAndGet();
+		return new PooledConnection(connection, dataSource.getStatementCacheSize());
+	}
+
+	private static void closeConnection(PooledConnection pooledConnection) {
+		totalConnections.decrementAndGet();
+		pooledConnection.close();
+	}
+
+	private static void runReleaseActions(List<Runnable> actions) {
+		if (actions == null) {
+			return;
+		}
+		for (Runnable action : actions) {
+			try {
+				action.run();
+			} catch (Exception e) {
+				logger.warn("Run connection release action error", e);
+			}
+		}
+	}
+
+	private static boolean isValid(PooledConnection pooledConnection) {
+		try {
+			int timeoutSeconds = (int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(dataSource.getValidationTimeout() + 999));
+			if (pooledConnection.getConnection().isValid(timeoutSeconds)) {
+				pooledConnection.markValid();
+				return true;
+			}
+			return false;
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	private static void housekeeping() {
+		try {
+			long now = System.currentTimeMillis();
+			evictIdleConnections(now);
+			fillIdleConnections();
+			detectLeaks(now);
+		} catch (Exception e) {
+			logger.error("Connection pool housekeeping error", e);
+		}
+	}
+
+	/**
+	 * 检查空闲连接：超过maxLifetime或多于minConn且空闲超时的关闭，其余超过keepAliveTime的校验保活。
+	 * 检查前先从队列中移除，移除失败说明已被借出
+	 */
+	private static void evictIdleConnections(long now) {
+		for (PooledConnection pooledConnection : new ArrayList<>(idleConnections)) {
+			long idleTime = now - pooledConnection.getLastUsedTime();
+			if (pooledConnection.isExpired(now, dataSource.getMaxLifetime())
+					|| (idleTime > dataSource.getIdleTimeout() && totalConnections.get() > dataSource.getMinConn())) {
+				if (idleConnections.removeFirstOccurrence(pooledConnection)) {
+					closeConnection(pooledConnection);
+				}
+			} else if (now - pooledConnection.getLastAliveTime() > dataSource.getKeepAliveTime() && idleConnections.removeFirstOccurrence(pooledConnection)) {
+				if (isValid(pooledConnection)) {
+					idleConnections.offerLast(pooledConnection);
+				} else {
+					logger.warn("Close broken idle connection: {}", pooledConnection.getConnection());
+					closeConnection(pooledConnection);
+				}
+			}
+		}
+	}
+
+	private static void fillIdleConnections() throws SQLException {
+		while (totalConnections.get() < dataSource.getMinConn() && permits.tryAcquire()) {
+			try {
+				idleConnections.offerLast(createConnection());
+			} finally {
+				permits.release();
+			}
+		}
+	}
+
+	private static void detectLeaks(long now) {
+		long threshold = dataSource.getLeakDetectionThreshold();
+		if (threshold <= 0) {
+			return;
+		}
+		for (PooledConnection pooledConnection : borrowedConnections.values()) {
+			if (!pooledConnection.isLeakReported() && now - pooledConnection.getBorrowTime() > threshold) {
+				pooledConnection.setLeakReported(true);
+				logger.warn("Connection leak detected, borrowed {}ms ago: {}", now - pooledConnection.getBorrowTime(), pooledConnection.getConnection(), pooledConnection.getBorrowStack());
 			}
-			return connection;
 		}
 	}
 }
@@ -0,0 +1,146 @@
+package com.zhukai.framework.fast.rest.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 连接池中的一个物理连接及其借出状态，以及按SQL缓存的PreparedStatement（LRU）
+ */
+class PooledConnection {
+	private final Connection connection;
+	private final Map<String, PreparedStatement> statementCache;
+	private final List<Runnable> releaseActions = new ArrayList<>();
+	private final long createTime = System.currentTimeMillis();
+	private volatile long lastUsedTime = createTime;
+	private volatile long lastValidTime = createTime;
+	private volatile long borrowTime;
+	private volatile Throwable borrowStack;
+	private volatile boolean leakReported;
+
+	PooledConnection(Connection connection, int statementCacheSize) {
+		this.connection = connection;
+		this.statementCache = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+				if (size() > statementCacheSize) {
+					closeStatement(eldest.getValue());
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * 连接同一时间只被一个线程借用，缓存不需要同步
+	 *
+	 * @return 缓存的PreparedStatement，没有时返回null
+	 */
+	PreparedStatement getCachedStatement(String sql) {
+		return statementCache.get(sql);
+	}
+
+	void cacheStatement(String sql, PreparedStatement statement) {
+		statementCache.put(sql, statement);
+	}
+
+	boolean isCached(String sql, PreparedStatement statement) {
+		return statementCache.get(sql) == statement;
+	}
+
+	void removeStatement(String sql) {
+		PreparedStatement statement = statementCache.remove(sql);
+		if (statement != null) {
+			closeStatement(statement);
+		}
+	}
+
+	void addReleaseAction(Runnable action) {
+		releaseActions.add(action);
+	}
+
+	/** 取出并清空归还时要执行的操作 */
+	List<Runnable> takeReleaseActions() {
+		if (releaseActions.isEmpty()) {
+			return null;
+		}
+		List<Runnable> actions = new ArrayList<>(releaseActions);
+		releaseActions.clear();
+		return actions;
+	}
+
+	Connection getConnection() {
+		return connection;
+	}
+
+	long getLastUsedTime() {
+		return lastUsedTime;
+	}
+
+	/** 最近一次使用或校验通过的时间 */
+	long getLastAliveTime() {
+		return Math.max(lastUsedTime, lastValidTime);
+	}
+
+	void markValid() {
+		lastValidTime = System.currentTimeMillis();
+	}
+
+	long getBorrowTime() {
+		return borrowTime;
+	}
+
+	Throwable getBorrowStack() {
+		return borrowStack;
+	}
+
+	boolean isLeakReported() {
+		return leakReported;
+	}
+
+	void setLeakReported(boolean leakReported) {
+		this.leakReported = leakReported;
+	}
+
+	boolean isExpired(long now, long maxLifetime) {
+		return maxLifetime > 0 && now - createTime > maxLifetime;
+	}
+
+	/**
+	 * @param recordStack
+	 *            是否记录借出位置，用于泄漏检测
+	 */
+	void borrow(boolean recordStack) {
+		borrowTime = System.currentTimeMillis();
+		borrowStack = recordStack ? new Throwable("Connection borrowed here") : null;
+		leakReported = false;
+	}
+
+	void giveBack() {
+		lastUsedTime = System.currentTimeMillis();
+		borrowStack = null;
+	}
+
+	void close() {
+		statementCache.clear();
+		try {
+			connection.close();
+		} catch (SQLException e) {
+			// 连接已经不可用，忽略
+		}
+	}
+
+	private static void closeStatement(Statement statement) {
+		try {
+			statement.close();
+		} catch (SQLException e) {
+			// 语句已经不可用，忽略
+		}
+	}
+}
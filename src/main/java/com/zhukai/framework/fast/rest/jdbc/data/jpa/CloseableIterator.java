@@ -0,0 +1,14 @@
+package com.zhukai.framework.fast.rest.jdbc.data.jpa;
+
+import java.util.Iterator;
+
+/**
+ * repository逐行查询返回的迭代器，持有结果集以及（非事务时）连接，读完时自动释放。
+ * 中途放弃时必须close，建议用try-with-resources。
+ * 在事务中时使用事务的连接，MySQL流式读取期间同一连接上不能执行其他查询，需先读完或关闭
+ */
+public interface CloseableIterator<T> extends Iterator<T>, AutoCloseable {
+
+	@Override
+	void close();
+}
@@ -2,6 +2,7 @@ package com.zhukai.framework.fast.rest.jdbc.data.jpa;
 
 import java.io.Serializable;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface CrudRepository<T, ID extends Serializable> {
 
@@ -23,6 +24,16 @@ public interface CrudRepository<T, ID extends Serializable> {
 
 	List<T> findAll(List<ID> ids);
 
+	List<T> findAll(Sort sort);
+
+	List<T> findAll(Pageable pageable);
+
+	/**
+	 * 逐行读取全表，连接在Stream关闭或读完时释放。
+	 * 在事务中使用事务的连接，MySQL在Stream关闭前不能在同一事务中执行其他查询
+	 */
+	Stream<T> streamAll();
+
 	long count();
 
 	void delete(ID id);
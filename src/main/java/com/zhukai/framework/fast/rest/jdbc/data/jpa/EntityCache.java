@@ -0,0 +1,156 @@
+package com.zhukai.framework.fast.rest.jdbc.data.jpa;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.zhukai.framework.fast.rest.annotation.jpa.Cacheable;
+
+/**
+ * 按主键缓存@Cacheable实体，LRU淘汰，超过ttl的条目读取时丢弃。
+ * 缓存和返回的都是副本，调用方修改实体不会影响缓存。
+ * 每次清除递增generation，查询前取得的generation已过期时不再放入，避免清除前读到的旧数据在清除后写入缓存。
+ * 在请求线程（可能是虚拟线程）中访问，用ReentrantLock而不是synchronized
+ */
+public class EntityCache<T> {
+	private static final Map<Class<?>, EntityCache<?>> caches = new ConcurrentHashMap<>();
+	private static final EntityCache<?> NONE = new EntityCache<>(null, 0, 0);
+
+	private final EntityMetadata<T> metadata;
+	private final long ttl;
+	private final Map<Object, CacheEntry<T>> entries;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final ReentrantLock lock = new ReentrantLock();
+	private long generation;
+
+	private static class CacheEntry<T> {
+		private final T entity;
+		private final long expireTime;
+
+		private CacheEntry(T entity, long expireTime) {
+			this.entity = entity;
+			this.expireTime = expireTime;
+		}
+	}
+
+	private EntityCache(EntityMetadata<T> metadata, int maxSize, long ttl) {
+		this.metadata = metadata;
+		this.ttl = ttl;
+		this.entries = new LinkedHashMap<Object, CacheEntry<T>>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Object, CacheEntry<T>> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/**
+	 * @return 实体类没有@Cacheable时返回null
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> EntityCache<T> of(Class<T> entityClass) {
+		EntityCache<?> cache = caches.computeIfAbsent(entityClass, clazz -> {
+			Cacheable cacheable = clazz.getAnnotation(Cacheable.class);
+			if (cacheable == null) {
+				return NONE;
+			}
+			return new EntityCache<>(EntityMetadata.of(clazz), cacheable.maxSize(), cacheable.ttl());
+		});
+		return cache == NONE ? null : (EntityCache<T>) cache;
+	}
+
+	/**
+	 * @return 缓存中实体的副本，没有或已过期时返回null
+	 */
+	public T get(Object id) {
+		CacheEntry<T> entry;
+		lock.lock();
+		try {
+			entry = entries.get(id);
+			if (entry != null && entry.expireTime < System.currentTimeMillis()) {
+				entries.remove(id);
+				entry = null;
+			}
+		} finally {
+			lock.unlock();
+		}
+		if (entry == null) {
+			misses.increment();
+			return null;
+		}
+		hits.increment();
+		return metadata.copy(entry.entity);
+	}
+
+	/** 查询数据库之前取得，传给put */
+	public long getGeneration() {
+		lock.lock();
+		try {
+			return generation;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @param loadGeneration
+	 *            查询前取得的generation，之后有过清除时不放入
+	 */
+	public void put(Object id, T entity, long loadGeneration) {
+		CacheEntry<T> entry = new CacheEntry<>(metadata.copy(entity), System.currentTimeMillis() + ttl);
+		lock.lock();
+		try {
+			if (loadGeneration == generation) {
+				entries.put(id, entry);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public void evict(Object id) {
+		lock.lock();
+		try {
+			generation++;
+			entries.remove(id);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public void evictAll() {
+		lock.lock();
+		try {
+			generation++;
+			entries.clear();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int size() {
+		lock.lock();
+		try {
+			return entries.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	public double getHitRatio() {
+		long hitCount = hits.sum();
+		long total = hitCount + misses.sum();
+		return total == 0 ? 0 : (double) hitCount / total;
+	}
+}
@@ -0,0 +1,96 @@
+package com.zhukai.framework.fast.rest.jdbc.data.jpa;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.zhukai.framework.fast.rest.jdbc.DBConnectionPool;
+
+/**
+ * 逐行读取结果集的游标，持有语句、结果集以及（非事务时）连接。
+ * 读完或close时释放，CloseableIterator和Stream都用try-with-resources关闭
+ */
+class EntityCursor<T> implements CloseableIterator<T> {
+	private static final Logger logger = LoggerFactory.getLogger(EntityCursor.class);
+
+	private final EntityMetadata<T> metadata;
+	private final PreparedStatement statement;
+	private final ResultSet resultSet;
+	private final Connection ownedConnection;
+	private T next;
+	private boolean fetched;
+	private boolean closed;
+
+	/**
+	 * @param ownedConnection
+	 *            关闭时归还给连接池的连接，在事务中时为null
+	 */
+	EntityCursor(EntityMetadata<T> metadata, PreparedStatement statement, ResultSet resultSet, Connection ownedConnection) {
+		this.metadata = metadata;
+		this.statement = statement;
+		this.resultSet = resultSet;
+		this.ownedConnection = ownedConnection;
+	}
+
+	Stream<T> stream() {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(this::close);
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (!fetched && !closed) {
+			try {
+				if (resultSet.next()) {
+					next = metadata.mapRow(resultSet);
+					fetched = true;
+				} else {
+					close();
+				}
+			} catch (Exception e) {
+				close();
+				throw new IllegalStateException("Read result set error", e);
+			}
+		}
+		return fetched;
+	}
+
+	@Override
+	public T next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		fetched = false;
+		T entity = next;
+		next = null;
+		return entity;
+	}
+
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		fetched = false;
+		next = null;
+		try {
+			resultSet.close();
+			statement.close();
+		} catch (SQLException e) {
+			logger.warn("Close cursor error", e);
+		} finally {
+			if (ownedConnection != null) {
+				DBConnectionPool.freeConnection(ownedConnection);
+			}
+		}
+	}
+}
@@ -0,0 +1,199 @@
+package com.zhukai.framework.fast.rest.jdbc.data.jpa;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.zhukai.framework.fast.rest.annotation.jpa.Entity;
+import com.zhukai.framework.fast.rest.annotation.jpa.Id;
+import com.zhukai.framework.fast.rest.util.ReflectUtil;
+import com.zhukai.framework.fast.rest.util.ReflectUtil.FieldAccessor;
+
+/**
+ * 实体类的表名、主键、字段和列的映射，每个类只解析一次，之后不可变。
+ * 查询时按selectColumns的顺序列出所有列（包括join的实体），
+ * 读取结果时按列序号给字段赋值，不再按"表名.列名"查找
+ */
+final class EntityMetadata<T> {
+	private static final Map<Class<?>, EntityMetadata<?>> cache = new ConcurrentHashMap<>();
+
+	private final Class<T> entityClass;
+	private final String tableName;
+	private final Field idField;
+	private final FieldAccessor idAccessor;
+	private final List<Field> fields;
+	private final List<FieldAccessor> accessors;
+	private final Constructor<T> constructor;
+	private final String selectColumns;
+	private final RowMapper<T> rowMapper;
+
+	@FunctionalInterface
+	private interface ColumnReader {
+		Object read(ResultSet resultSet) throws Exception;
+	}
+
+	/**
+	 * 按列序号读取一行，join的实体字段由嵌套的RowMapper读取
+	 */
+	private static final class RowMapper<T> {
+		private final Constructor<T> constructor;
+		private final FieldAccessor[] accessors;
+		private final ColumnReader[] readers;
+		private final int idIndex;
+
+		private RowMapper(Constructor<T> constructor, FieldAccessor[] accessors, ColumnReader[] readers, int idIndex) {
+			this.constructor = constructor;
+			this.accessors = accessors;
+			this.readers = readers;
+			this.idIndex = idIndex;
+		}
+
+		/**
+		 * @return 主键为null（left join没有关联行）时返回null
+		 */
+		private T map(ResultSet resultSet) throws Exception {
+			T entity = constructor.newInstance();
+			for (int i = 0; i < accessors.length; i++) {
+				Object columnValue = readers[i].read(resultSet);
+				if (i == idIndex && columnValue == null) {
+					return null;
+				}
+				accessors[i].set(entity, columnValue);
+			}
+			return entity;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	static <T> EntityMetadata<T> of(Class<T> entityClass) {
+		EntityMetadata<T> metadata = (EntityMetadata<T>) cache.get(entityClass);
+		if (metadata == null) {
+			// 解析时会递归解析join的实体类，不能放在computeIfAbsent里
+			metadata = new EntityMetadata<>(entityClass);
+			EntityMetadata<T> existing = (EntityMetadata<T>) cache.putIfAbsent(entityClass, metadata);
+			if (existing != null) {
+				metadata = existing;
+			}
+		}
+		return metadata;
+	}
+
+	private EntityMetadata(Class<T> entityClass) {
+		this.entityClass = entityClass;
+		this.tableName = JpaUtil.getTableName(entityClass);
+		List<Field> declaredFields = new ArrayList<>();
+		List<FieldAccessor> fieldAccessors = new ArrayList<>();
+		Field id = null;
+		FieldAccessor idFieldAccessor = null;
+		for (Field field : entityClass.getDeclaredFields()) {
+			FieldAccessor accessor = ReflectUtil.getFieldAccessor(field);
+			declaredFields.add(field);
+			fieldAccessors.add(accessor);
+			if (id == null && field.isAnnotationPresent(Id.class)) {
+				id = field;
+				idFieldAccessor = accessor;
+			}
+		}
+		this.idField = id;
+		this.idAccessor = idFieldAccessor;
+		this.fields = Collections.unmodifiableList(declaredFields);
+		this.accessors = Collections.unmodifiableList(fieldAccessors);
+		try {
+			this.constructor = entityClass.getConstructor();
+		} catch (NoSuchMethodException e) {
+			throw new IllegalArgumentException("Entity " + entityClass.getName() + " has no public no-arg constructor", e);
+		}
+		StringJoiner columns = new StringJoiner(",");
+		this.rowMapper = createRowMapper(columns, new int[]{0});
+		this.selectColumns = columns.toString();
+	}
+
+	/**
+	 * @param columns
+	 *            按读取顺序收集查询列
+	 * @param columnIndex
+	 *            已分配的列序号
+	 */
+	private RowMapper<T> createRowMapper(StringJoiner columns, int[] columnIndex) {
+		ColumnReader[] readers = new ColumnReader[fields.size()];
+		int idIndex = -1;
+		for (int i = 0; i < readers.length; i++) {
+			Field field = fields.get(i);
+			if (field == idField) {
+				idIndex = i;
+			}
+			if (field.getType().isAnnotationPresent(Entity.class)) {
+				readers[i] = of(field.getType()).createRowMapper(columns, columnIndex)::map;
+			} else {
+				columns.add(tableName + "." + JpaUtil.getColumnName(field));
+				int index = ++columnIndex[0];
+				readers[i] = resultSet -> resultSet.getObject(index);
+			}
+		}
+		return new RowMapper<>(constructor, accessors.toArray(new FieldAccessor[0]), readers, idIndex);
+	}
+
+	Class<T> getEntityClass() {
+		return entityClass;
+	}
+
+	String getTableName() {
+		return tableName;
+	}
+
+	Field getIdField() {
+		return idField;
+	}
+
+	FieldAccessor getIdAccessor() {
+		return idAccessor;
+	}
+
+	/** 所有字段，已经setAccessible */
+	List<Field> getFields() {
+		return fields;
+	}
+
+	/** 与getFields顺序一致的读写器 */
+	List<FieldAccessor> getAccessors() {
+		return accessors;
+	}
+
+	/** 逗号分隔的查询列，与mapRow读取的列序号一致 */
+	String getSelectColumns() {
+		return selectColumns;
+	}
+
+	/**
+	 * 复制实体的字段，join的实体也复制
+	 */
+	@SuppressWarnings("unchecked")
+	T copy(T entity) {
+		if (entity == null) {
+			return null;
+		}
+		try {
+			T copy = constructor.newInstance();
+			for (FieldAccessor accessor : accessors) {
+				Object value = accessor.get(entity);
+				if (value != null && accessor.getField().getType().isAnnotationPresent(Entity.class)) {
+					value = ((EntityMetadata<Object>) of(accessor.getField().getType())).copy(value);
+				}
+				accessor.set(copy, value);
+			}
+			return copy;
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Copy entity " + entityClass.getName() + " error", e);
+		}
+	}
+
+	T mapRow(ResultSet resultSet) throws Exception {
+		return rowMapper.map(resultSet);
+	}
+}
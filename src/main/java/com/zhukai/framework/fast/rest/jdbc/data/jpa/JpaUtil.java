@@ -2,18 +2,37 @@ package com.zhukai.framework.fast.rest.jdbc.data.jpa;
 
 import java.lang.reflect.Field;
 import java.sql.ResultSet;
-import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 import com.zhukai.framework.fast.rest.annotation.jpa.Column;
 import com.zhukai.framework.fast.rest.annotation.jpa.Entity;
 import com.zhukai.framework.fast.rest.annotation.jpa.GeneratedValue;
 import com.zhukai.framework.fast.rest.annotation.jpa.Id;
 import com.zhukai.framework.fast.rest.util.ReflectUtil;
+import com.zhukai.framework.fast.rest.util.ReflectUtil.FieldAccessor;
 
+/**
+ * 生成的SQL都使用?占位符，参数另外绑定；SQL模板按实体类和操作缓存
+ */
 public class JpaUtil {
+	private static final int MAX_SORT_COLUMNS = 8;
+	private static final Map<Class, Map<String, String>> sqlTemplates = new ConcurrentHashMap<>();
+
+	/**
+	 * @param key
+	 *            同一实体类下区分不同SQL的键，如操作名、查询的属性名
+	 */
+	static String getSqlTemplate(Class clazz, String key, Supplier<String> builder) {
+		return sqlTemplates.computeIfAbsent(clazz, k -> new ConcurrentHashMap<>()).computeIfAbsent(key, k -> builder.get());
+	}
 
 	public static String getTableName(Class clazz) {
 		String tableName = "";
@@ -71,26 +90,18 @@ public class JpaUtil {
 		return sqlColumn.toString();
 	}
 
+	/**
+	 * 转换成绑定到SQL的参数，实体取其主键值
+	 */
 	static Object convertToColumnValue(Object obj) {
-		if (obj == null) {
-			return null;
-		}
-		Object objValue;
-		if (!obj.getClass().isAnnotationPresent(Entity.class)) {
-			objValue = obj;
-		} else {
-			Field idField = getIdField(obj.getClass());
-			objValue = getColumnValueByField(obj, idField);
-		}
-		if (objValue instanceof String) {
-			return "'" + objValue + "'";
+		if (obj == null || !obj.getClass().isAnnotationPresent(Entity.class)) {
+			return obj;
 		}
-		return objValue;
-
+		return getColumnValueByField(obj, EntityMetadata.of(obj.getClass()).getIdAccessor());
 	}
 
 	static Field getIdField(Class clazz) {
-		return Arrays.stream(clazz.getDeclaredFields()).filter(e -> e.isAnnotationPresent(Id.class)).findFirst().get();
+		return EntityMetadata.of(clazz).getIdField();
 	}
 
 	static String getColumnName(Field field) {
@@ -106,96 +117,190 @@ public class JpaUtil {
 		return getSelectMainSql(clazz).append(getJoinSql(clazz));
 	}
 
+	/**
+	 * 结果集的列必须是getSelectSqlWithoutProperties查询出的列
+	 */
 	static <T> T convertToEntity(Class<T> convertClazz, ResultSet resultSet) throws Exception {
-		String mainTableName = getTableName(convertClazz);
-		T entity = ReflectUtil.createInstance(convertClazz, null);
-		for (Field field : convertClazz.getDeclaredFields()) {
-			Object columnValue;
-			if (field.getType().isAnnotationPresent(Entity.class)) {
-				columnValue = convertToEntity(field.getType(), resultSet);
-			} else {
-				columnValue = resultSet.getObject(mainTableName + "." + getColumnName(field));
+		return EntityMetadata.of(convertClazz).mapRow(resultSet);
+	}
+
+	/**
+	 * @param properties
+	 *            属性名和值交替排列，属性名可以是join的实体属性（如user.name），值用getPropertyValues取得
+	 */
+	static String getSelectSQL(Class clazz, Object[] properties) {
+		if (properties == null) {
+			return getSqlTemplate(clazz, "select", () -> getSelectSqlWithoutProperties(clazz).toString());
+		}
+		StringJoiner key = new StringJoiner(",", "select:", "");
+		for (int i = 0; i < properties.length; i += 2) {
+			key.add(properties[i].toString());
+		}
+		return getSqlTemplate(clazz, key.toString(), () -> buildSelectSQL(clazz, properties));
+	}
+
+	static Object[] getPropertyValues(Object[] properties) {
+		if (properties == null) {
+			return new Object[0];
+		}
+		Object[] values = new Object[properties.length / 2];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = convertToColumnValue(properties[i * 2 + 1]);
+		}
+		return values;
+	}
+
+	static String getSaveSQL(Class clazz) {
+		return getSqlTemplate(clazz, "insert", () -> {
+			StringJoiner columns = new StringJoiner(",", "(", ")");
+			StringJoiner values = new StringJoiner(",", "(", ")");
+			for (Field field : clazz.getDeclaredFields()) {
+				if (field.isAnnotationPresent(GeneratedValue.class)) {
+					continue;
+				}
+				columns.add(getColumnName(field));
+				values.add("?");
 			}
-			if (field.isAnnotationPresent(Id.class) && columnValue == null) {
-				return null;
+			return "INSERT INTO " + getTableName(clazz) + columns + " VALUES " + values;
+		});
+	}
+
+	/** 与getSaveSQL的占位符一一对应 */
+	static <T> Object[] getSaveArgs(T bean) {
+		List<Object> args = new ArrayList<>();
+		for (FieldAccessor accessor : EntityMetadata.of(bean.getClass()).getAccessors()) {
+			if (!accessor.getField().isAnnotationPresent(GeneratedValue.class)) {
+				args.add(getColumnValueByField(bean, accessor));
 			}
-			ReflectUtil.setFieldValue(entity, field.getName(), columnValue);
 		}
-		return entity;
+		return args.toArray();
 	}
 
-	static String getSelectSQL(Class clazz, Object[] properties) throws Exception {
-		StringBuilder sql = new StringBuilder();
-		sql.append(getSelectSqlWithoutProperties(clazz));
-		if (properties != null) {
-			sql.append(" WHERE ");
-			for (int i = 0; i < properties.length; i += 2) {
-				String columnName = properties[i].toString();
-				String[] arr = columnName.split("\\.");
-				Class fieldClass = clazz;
-				String columnTableName = getTableName(clazz);
-				for (int j = 0; j < arr.length - 1; j++) {
-					Field field = ReflectUtil.getDeclaredField(fieldClass, arr[i]);
-					if (field == null)
-						continue;
-					fieldClass = field.getType();
-					columnTableName = getTableName(fieldClass);
+	static String getUpdateSQL(Class clazz) {
+		return getSqlTemplate(clazz, "update", () -> {
+			StringJoiner columns = new StringJoiner(",");
+			for (Field field : clazz.getDeclaredFields()) {
+				if (!field.isAnnotationPresent(Id.class)) {
+					columns.add(getColumnName(field) + "=?");
 				}
-				sql.append(columnTableName).append(".").append(getColumnName(fieldClass, arr[arr.length - 1]));
-				sql.append("=").append(convertToColumnValue(properties[i + 1])).append(" AND ");
 			}
-			sql.delete(sql.length() - 4, sql.length() - 1);
+			return "UPDATE " + getTableName(clazz) + " SET " + columns + " WHERE " + getColumnName(getIdField(clazz)) + "=?";
+		});
+	}
+
+	/** 与getUpdateSQL的占位符一一对应，主键在最后 */
+	static <T> Object[] getUpdateArgs(T bean) {
+		List<Object> args = new ArrayList<>();
+		EntityMetadata<?> metadata = EntityMetadata.of(bean.getClass());
+		for (FieldAccessor accessor : metadata.getAccessors()) {
+			if (accessor != metadata.getIdAccessor()) {
+				args.add(getColumnValueByField(bean, accessor));
+			}
 		}
-		return sql.toString();
+		args.add(getColumnValueByField(bean, metadata.getIdAccessor()));
+		return args.toArray();
 	}
 
-	static <T> String getSaveSQL(T bean) throws SQLException {
-		StringBuilder sql = new StringBuilder();
-		sql.append("INSERT INTO ");
-		String tableName = getTableName(bean.getClass());
-		sql.append(tableName);
-		StringBuilder columns = new StringBuilder("(");
-		StringBuilder values = new StringBuilder("(");
-		for (Field field : bean.getClass().getDeclaredFields()) {
-			if (field.isAnnotationPresent(GeneratedValue.class)) {
-				continue;
+	/** 按size个主键查询实体 */
+	static String getSelectByIdsSQL(Class clazz, int size) {
+		return getSqlTemplate(clazz, "selectByIds:" + size, () -> {
+			String idColumn = getTableName(clazz) + "." + getColumnName(getIdField(clazz));
+			return getSelectSqlWithoutProperties(clazz).append(" WHERE ").append(idColumn).append(" IN (").append(String.join(",", Collections.nCopies(size, "?"))).append(")").toString();
+		});
+	}
+
+	/** 查询size个主键中已存在的主键 */
+	static String getExistingIdsSQL(Class clazz, int size) {
+		return getSqlTemplate(clazz, "existingIds:" + size, () -> {
+			String idColumn = getColumnName(getIdField(clazz));
+			return "SELECT " + idColumn + " FROM " + getTableName(clazz) + " WHERE " + idColumn + " IN (" + String.join(",", Collections.nCopies(size, "?")) + ")";
+		});
+	}
+
+	/**
+	 * 带排序和分页的查询，key区分不同的条件，与排序、分页方式一起作为模板的键。
+	 * 页码分页在最后追加LIMIT ?, ?（offset, size）；键集分页按主键升序，追加主键>?（有lastId时）和LIMIT ?
+	 *
+	 * @param conditions
+	 *            WHERE后的条件，没有时为null
+	 * @param pageable
+	 *            不分页时为null
+	 */
+	static String getQuerySQL(Class clazz, String key, String conditions, Sort sort, Pageable pageable) {
+		boolean seek = pageable != null && pageable.isKeyset();
+		boolean seekAfter = seek && pageable.getLastId() != null;
+		String pagingKey = pageable == null ? "" : seekAfter ? "seekAfter" : seek ? "seek" : "limit";
+		String orderBy = seek ? "" : getOrderBy(clazz, sort);
+		return getSqlTemplate(clazz, key + "|" + orderBy + "|" + pagingKey, () -> {
+			String idColumn = getTableName(clazz) + "." + getColumnName(getIdField(clazz));
+			StringJoiner where = new StringJoiner(" AND ", " WHERE ", "").setEmptyValue("");
+			if (conditions != null) {
+				where.add("(" + conditions + ")");
 			}
-			String columnName = getColumnName(field);
-			columns.append(columnName).append(",");
-			Object columnValue = getColumnValueByField(bean, field);
-			columnValue = convertToColumnValue(columnValue);
-			values.append(columnValue).append(",");
+			if (seekAfter) {
+				where.add(idColumn + ">?");
+			}
+			StringBuilder sql = getSelectSqlWithoutProperties(clazz).append(where);
+			if (seek) {
+				return sql.append(" ORDER BY ").append(idColumn).append(" ASC LIMIT ?").toString();
+			}
+			sql.append(orderBy);
+			if (pageable != null) {
+				sql.append(" LIMIT ?, ?");
+			}
+			return sql.toString();
+		});
+	}
+
+	/**
+	 * 排序解析成ORDER BY子句，同一列只保留第一次出现的方向。
+	 * 模板按解析后的列缓存，排序来自请求参数时不同写法不会产生新的模板，列数也有上限
+	 */
+	private static String getOrderBy(Class clazz, Sort sort) {
+		if (sort == null || sort.isEmpty()) {
+			return "";
 		}
-		columns.deleteCharAt(columns.length() - 1);
-		columns.append(")");
-		values.deleteCharAt(values.length() - 1);
-		values.append(")");
-		sql.append(columns).append(" VALUES ").append(values);
-		return sql.toString();
+		Map<String, Sort.Direction> columns = new LinkedHashMap<>();
+		for (Sort.Order order : sort.getOrders()) {
+			columns.putIfAbsent(getQualifiedColumnName(clazz, order.getProperty()), order.getDirection());
+		}
+		if (columns.size() > MAX_SORT_COLUMNS) {
+			throw new IllegalArgumentException("Sort by more than " + MAX_SORT_COLUMNS + " columns: " + sort);
+		}
+		StringJoiner orderBy = new StringJoiner(",", " ORDER BY ", "");
+		columns.forEach((column, direction) -> orderBy.add(column + " " + direction));
+		return orderBy.toString();
 	}
 
-	static <T> String getUpdateSQL(T bean) throws SQLException {
-		StringBuilder sql = new StringBuilder();
-		sql.append("UPDATE ");
-		String tableName = getTableName(bean.getClass());
-		sql.append(tableName).append(" SET ");
-		for (Field field : bean.getClass().getDeclaredFields()) {
-			if (field.isAnnotationPresent(Id.class)) {
-				continue;
+	/**
+	 * 属性对应的"表名.列名"，属性可以是join实体的属性（如owner.name）
+	 */
+	static String getQualifiedColumnName(Class clazz, String property) {
+		String[] arr = property.split("\\.");
+		Class fieldClass = clazz;
+		Field field = null;
+		for (String name : arr) {
+			if (field != null) {
+				fieldClass = field.getType();
+			}
+			field = ReflectUtil.getDeclaredField(fieldClass, name);
+			if (field == null) {
+				throw new IllegalArgumentException("Property " + property + " is not exists in " + clazz.getName() + ": " + name + " is not a field of " + fieldClass.getName());
 			}
-			String columnName = getColumnName(field);
-			sql.append(columnName).append("=");
-			Object columnValue = getColumnValueByField(bean, field);
-			columnValue = convertToColumnValue(columnValue);
-			sql.append(columnValue);
-			sql.append(",");
 		}
-		sql.deleteCharAt(sql.length() - 1);
-		Field idField = getIdField(bean.getClass());
-		String idFieldName = getColumnName(idField);
-		Object id = ReflectUtil.getFieldValue(bean, idField.getName());
-		sql.append(" WHERE ").append(idFieldName).append("=").append(convertToColumnValue(id));
-		return sql.toString();
+		return getTableName(fieldClass) + "." + getColumnName(field);
+	}
+
+	static String getDeleteSQL(Class clazz) {
+		return getSqlTemplate(clazz, "delete", () -> "DELETE FROM " + getTableName(clazz) + " WHERE " + getColumnName(getIdField(clazz)) + "=?");
+	}
+
+	private static String buildSelectSQL(Class clazz, Object[] properties) {
+		StringJoiner conditions = new StringJoiner(" AND ", " WHERE ", "");
+		for (int i = 0; i < properties.length; i += 2) {
+			conditions.add(getQualifiedColumnName(clazz, properties[i].toString()) + "=?");
+		}
+		return getSelectSqlWithoutProperties(clazz).append(conditions).toString();
 	}
 
 	private static String getSqlType(Class typeClass) {
@@ -221,14 +326,17 @@ public class JpaUtil {
 		return null;
 	}
 
-	private static Object getColumnValueByField(Object obj, Field field) {
-		Object fieldValue = ReflectUtil.getFieldValue(obj, field.getName());
+	/**
+	 * @param accessor
+	 *            EntityMetadata中字段的读写器
+	 */
+	private static Object getColumnValueByField(Object obj, FieldAccessor accessor) {
+		Object fieldValue = accessor.get(obj);
 		if (fieldValue == null) {
 			return null;
 		}
 		if (fieldValue.getClass().isAnnotationPresent(Entity.class)) {
-			Field idField = getIdField(fieldValue.getClass());
-			return getColumnValueByField(fieldValue, idField);
+			return getColumnValueByField(fieldValue, EntityMetadata.of(fieldValue.getClass()).getIdAccessor());
 		}
 		return fieldValue;
 	}
@@ -262,8 +370,8 @@ public class JpaUtil {
 
 	private static StringBuilder getSelectMainSql(Class clazz) {
 		StringBuilder sql = new StringBuilder();
-		String mainTableName = getTableName(clazz);
-		sql.append("SELECT * FROM ").append(mainTableName).append(" ");
+		EntityMetadata<?> metadata = EntityMetadata.of(clazz);
+		sql.append("SELECT ").append(metadata.getSelectColumns()).append(" FROM ").append(metadata.getTableName()).append(" ");
 		return sql;
 	}
 
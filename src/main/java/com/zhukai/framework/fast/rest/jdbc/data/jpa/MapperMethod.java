@@ -1,120 +1,177 @@
 package com.zhukai.framework.fast.rest.jdbc.data.jpa;
 
-import com.zhukai.framework.fast.rest.annotation.jpa.ExecuteUpdate;
-import com.zhukai.framework.fast.rest.annotation.jpa.QueryCondition;
+import com.zhukai.framework.fast.rest.annotation.jpa.GeneratedValue;
+import com.zhukai.framework.fast.rest.bean.configure.ConfigureBeanFactory;
+import com.zhukai.framework.fast.rest.config.DataSource;
 import com.zhukai.framework.fast.rest.jdbc.DBConnectionPool;
-import com.zhukai.framework.fast.rest.util.ReflectUtil;
-import org.apache.commons.lang3.StringUtils;
+import com.zhukai.framework.fast.rest.util.ReflectUtil.FieldAccessor;
+import com.zhukai.framework.fast.rest.util.TypeUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.Field;
-import java.lang.reflect.Method;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class MapperMethod<T> {
 	private static final Logger logger = LoggerFactory.getLogger(MapperMethod.class);
 
 	private Connection conn;
-	private Method method;
+	private final MapperMethodPlan plan;
 	private Object[] args;
 	private ResultSet resultSet;
-	private PreparedStatement statement;
+	private final Map<String, PreparedStatement> statements = new LinkedHashMap<>();
 	private Class<T> entityClass;
 	private boolean isTransactional = true;
+	private final EntityCache<T> entityCache;
+	private boolean connectionHandedOver;// 连接已交给EntityCursor，release时不归还
 
-	public MapperMethod(Method method, Object[] args, Class<T> entityClass, Connection conn) {
-		this.entityClass = entityClass;
-		this.method = method;
+	@SuppressWarnings("unchecked")
+	public MapperMethod(MapperMethodPlan plan, Object[] args, Connection conn) {
+		this.entityClass = (Class<T>) plan.getEntityClass();
+		this.plan = plan;
 		this.args = args;
 		this.conn = conn;
+		this.entityCache = EntityCache.of(entityClass);
 	}
 
+	/**
+	 * 先关闭结果集、归还语句，再归还连接
+	 */
 	public void release() throws SQLException, InterruptedException {
-		if (conn != null && !isTransactional) {
-			DBConnectionPool.freeConnection(conn);
-		}
-		if (statement != null) {
-			statement.close();
-		}
-		if (resultSet != null) {
-			resultSet.close();
+		try {
+			closeResultSet();
+			for (Map.Entry<String, PreparedStatement> entry : statements.entrySet()) {
+				DBConnectionPool.releaseStatement(conn, entry.getKey(), entry.getValue());
+			}
+		} finally {
+			statements.clear();
+			if (conn != null && !isTransactional && !connectionHandedOver) {
+				DBConnectionPool.freeConnection(conn);
+			}
 		}
 	}
 
 	@SuppressWarnings("unchecked")
 	public Object execute() throws Exception {
 		checkTransactional();
-		String methodName = method.getName();
-		if (method.isAnnotationPresent(ExecuteUpdate.class)) {
-			String sql = method.getAnnotation(ExecuteUpdate.class).value();
-			return executeUpdate(sql, args);
-		}
-		if (method.isAnnotationPresent(QueryCondition.class)) {
-			String queryCondition = method.getAnnotation(QueryCondition.class).value();
-			String sql = JpaUtil.getSelectSqlWithoutProperties(entityClass).append(" WHERE ").append(queryCondition).toString();
-			if (List.class.isAssignableFrom(method.getReturnType())) {
-				return getEntityList(sql, args);
-			}
-			return getEntity(sql + " LIMIT 1 ", args);
-		}
-		switch (methodName) {
-			case "findOne":
-				return getBean(args[0]);
-			case "exists":
-				if (args[0] instanceof Object[]) {
-					return existsByProperties((Object[]) args[0]);
+		switch (plan.getOperation()) {
+			case EXECUTE_UPDATE:
+				try {
+					return executeUpdate(plan.getSql(), args);
+				} finally {
+					evictAllCache();
 				}
+			case QUERY:
+				return query();
+			case FIND_ONE:
+				return getBean(args[0]);
+			case EXISTS:
 				return exists(args[0]);
-			case "findAll":
-				if (args != null) {
-					if (args[0] instanceof Object[]) {
-						return getBeans((Object[]) args[0]);
-					} else if (args[0] instanceof List) {
-
-						return getBeansIn(List.class.cast(args[0]));
-					}
-				}
-				return getBeans(null);
-			case "delete":
+			case EXISTS_BY_PROPERTIES:
+				return existsByProperties((Object[]) args[0]);
+			case FIND_ALL_BY_PROPERTIES:
+				return getBeans((Object[]) args[0]);
+			case FIND_ALL_IN:
+				return getBeansIn(List.class.cast(args[0]));
+			case DELETE:
 				return delete(args[0]);
-			case "save":
-				if (args[0] instanceof List) {
-					return saveBeans((List<T>) args[0]);
-				}
+			case SAVE:
 				return saveBean((T) args[0]);
-			case "count":
+			case SAVE_ALL:
+				return saveBeans((List<T>) args[0]);
+			case COUNT:
 				return count();
 		}
-		if (methodName.startsWith("findBy")) {
-			StringBuilder propertiesSql = new StringBuilder();
-			String propertiesString = methodName.substring(6);
-			String[] arr = propertiesString.split("And|Or");
-			for (int i = 0; i < arr.length; i++) {
-				if (i == 0) {
-					propertiesSql.append(" WHERE ");
-				}
-				propertiesSql.append(JpaUtil.getColumnName(entityClass, StringUtils.uncapitalize(arr[i]))).append("=").append(JpaUtil.convertToColumnValue(args[i]));
-				String afterString = propertiesString.substring(propertiesString.indexOf(arr[i]) + arr[i].length());
-				if (afterString.startsWith("And")) {
-					propertiesSql.append(" AND ");
-				} else if (afterString.startsWith("Or")) {
-					propertiesSql.append(" OR ");
-				}
+		throw new IllegalStateException("Unknown operation " + plan.getOperation());
+	}
+
+	/**
+	 * 按计划的返回类型查询List、Stream/CloseableIterator或单个实体。
+	 * 没有Pageable或Sort参数时直接使用计划里的SQL，否则按参数取得SQL模板，单个实体只使用排序
+	 */
+	private Object query() throws Exception {
+		Object[] values = args == null ? new Object[0] : args;
+		Pageable pageable = null;
+		Sort sort = null;
+		if (plan.getPagingType() == MapperMethodPlan.PagingType.PAGEABLE) {
+			pageable = (Pageable) values[values.length - 1];
+			sort = pageable == null ? null : pageable.getSort();
+			values = Arrays.copyOf(values, values.length - 1);
+		} else if (plan.getPagingType() == MapperMethodPlan.PagingType.SORT) {
+			sort = (Sort) values[values.length - 1];
+			values = Arrays.copyOf(values, values.length - 1);
+		}
+		if (plan.isConvertArguments()) {
+			for (int i = 0; i < values.length; i++) {
+				values[i] = JpaUtil.convertToColumnValue(values[i]);
 			}
-			String selectSQL = JpaUtil.getSelectSqlWithoutProperties(entityClass).append(propertiesSql).toString();
-			if (List.class.isAssignableFrom(method.getReturnType())) {
-				return getEntityList(selectSQL);
+		}
+		String sql = sort == null && pageable == null ? plan.getSql() : plan.getQuerySQL(sort, pageable);
+		switch (plan.getResultType()) {
+			case LIST:
+				return getEntityList(sql, appendPagingParameters(values, pageable));
+			case STREAM:
+			case ITERATOR:
+				return streamEntities(sql, appendPagingParameters(values, pageable));
+			default:
+				return getEntity(sql, values);
+		}
+	}
+
+	private static Object[] appendPagingParameters(Object[] values, Pageable pageable) {
+		if (pageable == null) {
+			return values;
+		}
+		List<Object> parameters = new ArrayList<>(Arrays.asList(values));
+		if (!pageable.isKeyset()) {
+			parameters.add(pageable.getOffset());
+		} else if (pageable.getLastId() != null) {
+			parameters.add(JpaUtil.convertToColumnValue(pageable.getLastId()));
+		}
+		parameters.add(pageable.getSize());
+		return parameters.toArray();
+	}
+
+	/**
+	 * 返回Stream或CloseableIterator。使用只进只读、不缓存的语句，MySQL驱动以Integer.MIN_VALUE开启流式读取，
+	 * 其他数据库按fetchSize分批取（PostgreSQL需要关闭自动提交）。
+	 * 非事务时连接交给游标，读完或关闭时归还
+	 */
+	private Object streamEntities(String sql, Object[] properties) throws SQLException {
+		logger.debug("Execute streaming sql: {}, parameters: {}", sql, Arrays.toString(properties));
+		closeResultSet();
+		PreparedStatement statement = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		EntityCursor<T> cursor;
+		try {
+			DataSource dataSource = getDataSource();
+			statement.setFetchSize(dataSource.getUrl().startsWith("jdbc:mysql:") ? Integer.MIN_VALUE : dataSource.getFetchSize());
+			if (!isTransactional && conn.getAutoCommit()) {
+				conn.setAutoCommit(false);
+			}
+			if (properties != null) {
+				for (int i = 0; i < properties.length; i++) {
+					statement.setObject(i + 1, properties[i]);
+				}
 			}
-			return getEntity(selectSQL + " LIMIT 1 ");
+			cursor = new EntityCursor<>(EntityMetadata.of(entityClass), statement, statement.executeQuery(), isTransactional ? null : conn);
+		} catch (SQLException e) {
+			statement.close();
+			throw e;
 		}
-		throw new NoSuchMethodException(methodName + " is not exists");
+		connectionHandedOver = true;
+		return plan.getResultType() == MapperMethodPlan.ResultType.STREAM ? cursor.stream() : cursor;
 	}
 
 	private void checkTransactional() throws Exception {
@@ -126,7 +183,7 @@ public class MapperMethod<T> {
 
 	private long count() throws Exception {
 		String tableName = JpaUtil.getTableName(entityClass);
-		resultSet = executeQuery("select count(*) from " + tableName);
+		resultSet = executeQuery(JpaUtil.getSqlTemplate(entityClass, "count", () -> "select count(*) from " + tableName));
 		if (resultSet.next()) {
 			return resultSet.getInt(1);
 		}
@@ -134,75 +191,241 @@ public class MapperMethod<T> {
 		return -1;
 	}
 
+	/**
+	 * 先按主键分批查出已存在的行，再分别批量插入和更新。
+	 * 不在事务中时整批在一个事务里提交
+	 */
 	private boolean saveBeans(List<T> beans) throws Exception {
+		if (beans.isEmpty()) {
+			return true;
+		}
+		int batchSize = Math.max(1, getDataSource().getBatchSize());
+		FieldAccessor idAccessor = EntityMetadata.of(entityClass).getIdAccessor();
+		boolean generatedId = idAccessor.getField().isAnnotationPresent(GeneratedValue.class);
+		Set<Object> existingIds = findExistingIds(beans, idAccessor);
+		List<Object[]> inserts = new ArrayList<>();
+		List<Object[]> updates = new ArrayList<>();
+		for (T bean : beans) {
+			Object id = idAccessor.get(bean);
+			if (id != null && existingIds.contains(id)) {
+				updates.add(JpaUtil.getUpdateArgs(bean));
+			} else {
+				inserts.add(JpaUtil.getSaveArgs(bean));
+				if (id != null && !generatedId) {
+					// 列表中重复的主键，后面的按更新处理
+					existingIds.add(id);
+				}
+			}
+		}
+		boolean localTransaction = !isTransactional && conn.getAutoCommit();
+		if (localTransaction) {
+			conn.setAutoCommit(false);
+		}
+		try {
+			boolean success = executeBatch(JpaUtil.getSaveSQL(entityClass), inserts, batchSize);
+			success &= executeBatch(JpaUtil.getUpdateSQL(entityClass), updates, batchSize);
+			if (localTransaction) {
+				conn.commit();
+			}
+			return success;
+		} catch (Exception e) {
+			if (localTransaction) {
+				conn.rollback();
+			}
+			throw e;
+		} finally {
+			if (localTransaction) {
+				conn.setAutoCommit(true);
+			}
+			if (entityCache != null) {
+				for (Object id : existingIds) {
+					evictCache(id);
+				}
+			}
+		}
+	}
+
+	private Set<Object> findExistingIds(List<T> beans, FieldAccessor idAccessor) throws Exception {
+		List<Object> ids = new ArrayList<>();
 		for (T bean : beans) {
-			if (!saveBean(bean)) {
-				return false;
+			Object id = idAccessor.get(bean);
+			if (id != null) {
+				ids.add(id);
+			}
+		}
+		Set<Object> existingIds = new HashSet<>();
+		int maxInSize = Math.max(1, getDataSource().getMaxInSize());
+		for (int from = 0; from < ids.size(); from += maxInSize) {
+			Object[] chunk = padInParameters(ids.subList(from, Math.min(from + maxInSize, ids.size())), maxInSize);
+			resultSet = executeQuery(JpaUtil.getExistingIdsSQL(entityClass, chunk.length), chunk);
+			while (resultSet.next()) {
+				existingIds.add(resultSet.getObject(1, idAccessor.getField().getType()));
+			}
+		}
+		return existingIds;
+	}
+
+	private boolean executeBatch(String sql, List<Object[]> rows, int batchSize) throws SQLException {
+		if (rows.isEmpty()) {
+			return true;
+		}
+		logger.debug("Execute batch sql: {}, rows: {}", sql, rows.size());
+		PreparedStatement statement = prepareStatement(sql);
+		boolean success = true;
+		for (int i = 0; i < rows.size(); i++) {
+			Object[] row = rows.get(i);
+			for (int j = 0; j < row.length; j++) {
+				statement.setObject(j + 1, row[j]);
+			}
+			statement.addBatch();
+			if ((i + 1) % batchSize == 0 || i == rows.size() - 1) {
+				for (int count : statement.executeBatch()) {
+					success &= count >= 1 || count == Statement.SUCCESS_NO_INFO;
+				}
 			}
 		}
-		return true;
+		return success;
 	}
 
 	private boolean saveBean(T bean) throws Exception {
-		Field idField = JpaUtil.getIdField(entityClass);
-		Object id = ReflectUtil.getFieldValue(bean, idField.getName());
-		String sql;
-		if (!exists(id)) {
-			sql = JpaUtil.getSaveSQL(bean);
-		} else {
-			sql = JpaUtil.getUpdateSQL(bean);
+		Object id = EntityMetadata.of(entityClass).getIdAccessor().get(bean);
+		try {
+			if (!exists(id)) {
+				return executeUpdate(JpaUtil.getSaveSQL(entityClass), JpaUtil.getSaveArgs(bean));
+			}
+			return executeUpdate(JpaUtil.getUpdateSQL(entityClass), JpaUtil.getUpdateArgs(bean));
+		} finally {
+			evictCache(id);
 		}
-		return executeUpdate(sql);
 	}
 
-	private <ID> boolean delete(ID id) throws SQLException {
-		StringBuilder sql = new StringBuilder();
-		sql.append("DELETE FROM ").append(JpaUtil.getTableName(entityClass)).append(" ");
-		sql.append("WHERE ");
-		Field idField = JpaUtil.getIdField(entityClass);
-		String idFieldName = JpaUtil.getColumnName(idField);
-		sql.append(idFieldName).append("=").append(JpaUtil.convertToColumnValue(id));
-		return executeUpdate(sql.toString());
+	private <ID> boolean delete(ID id) throws Exception {
+		try {
+			return executeUpdate(JpaUtil.getDeleteSQL(entityClass), new Object[]{JpaUtil.convertToColumnValue(id)});
+		} finally {
+			evictCache(id);
+		}
 	}
 
+	/**
+	 * 实体有@Cacheable时先读缓存，事务中不读也不放入缓存
+	 */
 	private <ID> T getBean(ID id) throws Exception {
+		Object cacheKey = getCacheKey(id);
+		boolean useCache = cacheKey != null && entityCache != null && !isTransactional;
+		long generation = 0;
+		if (useCache) {
+			T cached = entityCache.get(cacheKey);
+			if (cached != null) {
+				return cached;
+			}
+			generation = entityCache.getGeneration();
+		}
 		Field idField = JpaUtil.getIdField(entityClass);
-		String idName = JpaUtil.getColumnName(idField);
-		List<T> beans = getBeans(new Object[]{idName, id});
+		List<T> beans = getBeans(new Object[]{idField.getName(), id});
 		if (beans != null && !beans.isEmpty()) {
+			if (useCache) {
+				entityCache.put(cacheKey, beans.get(0), generation);
+			}
 			return beans.get(0);
 		}
 		return null;
 	}
 
+	private Object getCacheKey(Object id) throws Exception {
+		if (entityCache == null) {
+			return null;
+		}
+		return TypeUtil.convert(JpaUtil.convertToColumnValue(id), JpaUtil.getIdField(entityClass).getType());
+	}
+
+	/**
+	 * 修改后清除缓存，事务中的修改在事务结束后再清除一次，期间其他线程读到的旧数据不会留在缓存里
+	 */
+	private void evictCache(Object id) throws Exception {
+		Object cacheKey = getCacheKey(id);
+		if (cacheKey != null) {
+			evictCache(() -> entityCache.evict(cacheKey));
+		}
+	}
+
+	private void evictAllCache() {
+		if (entityCache != null) {
+			evictCache(entityCache::evictAll);
+		}
+	}
+
+	private void evictCache(Runnable eviction) {
+		eviction.run();
+		if (isTransactional) {
+			DBConnectionPool.runOnRelease(conn, eviction);
+		}
+	}
+
 	private <ID> boolean exists(ID ID) throws Exception {
+		if (entityCache != null) {
+			return getBean(ID) != null;
+		}
 		Field idField = JpaUtil.getIdField(entityClass);
-		String sql = JpaUtil.getSelectSQL(entityClass, new Object[]{idField.getName(), ID});
-		resultSet = executeQuery(sql);
+		Object[] properties = new Object[]{idField.getName(), ID};
+		resultSet = executeQuery(JpaUtil.getSelectSQL(entityClass, properties), JpaUtil.getPropertyValues(properties));
 		return resultSet.next();
 	}
 
 	private boolean existsByProperties(Object[] properties) throws Exception {
 		String sql = JpaUtil.getSelectSQL(entityClass, properties);
-		resultSet = executeQuery(sql + " LIMIT 1");
+		resultSet = executeQuery(sql + " LIMIT 1", JpaUtil.getPropertyValues(properties));
 		return resultSet.next();
 	}
 
 	private List<T> getBeans(Object[] properties) throws Exception {
 		String sql = JpaUtil.getSelectSQL(entityClass, properties);
-		return getEntityList(sql);
+		return getEntityList(sql, JpaUtil.getPropertyValues(properties));
 	}
 
+	/**
+	 * 按maxInSize分批用IN查询，结果按ids的顺序排列，不存在的id对应null
+	 */
 	private <ID> List<T> getBeansIn(List<ID> ids) throws Exception {
-		List<T> beans = new ArrayList<>();
+		FieldAccessor idAccessor = EntityMetadata.of(entityClass).getIdAccessor();
+		Map<Object, T> beanMap = new HashMap<>();
+		List<Object> keys = new ArrayList<>(ids.size());
 		for (ID id : ids) {
-			beans.add(getBean(id));
+			Object key = TypeUtil.convert(JpaUtil.convertToColumnValue(id), idAccessor.getField().getType());
+			keys.add(key);
+			if (key != null) {
+				beanMap.put(key, null);
+			}
+		}
+		List<Object> distinctIds = new ArrayList<>(beanMap.keySet());
+		int maxInSize = Math.max(1, getDataSource().getMaxInSize());
+		for (int from = 0; from < distinctIds.size(); from += maxInSize) {
+			Object[] chunk = padInParameters(distinctIds.subList(from, Math.min(from + maxInSize, distinctIds.size())), maxInSize);
+			for (T bean : getEntityList(JpaUtil.getSelectByIdsSQL(entityClass, chunk.length), chunk)) {
+				beanMap.put(idAccessor.get(bean), bean);
+			}
+		}
+		List<T> beans = new ArrayList<>(keys.size());
+		for (Object key : keys) {
+			beans.add(key == null ? null : beanMap.get(key));
 		}
 		return beans;
 	}
 
-	private T getEntity(String sql) throws Exception {
-		return getEntity(sql, null);
+	/**
+	 * 参数个数补齐到2的幂（不超过maxInSize），重复最后一个参数，
+	 * 使不同长度的IN查询只产生少数几种SQL，便于语句缓存
+	 */
+	private static Object[] padInParameters(List<Object> parameters, int maxInSize) {
+		int size = parameters.size();
+		int paddedSize = Math.min(Integer.highestOneBit(size) == size ? size : Integer.highestOneBit(size) << 1, maxInSize);
+		Object[] padded = parameters.toArray(new Object[paddedSize]);
+		Arrays.fill(padded, size, paddedSize, parameters.get(size - 1));
+		return padded;
+	}
+
+	private static DataSource getDataSource() {
+		return ConfigureBeanFactory.getInstance().getBean(DataSource.class);
 	}
 
 	private T getEntity(String sql, Object[] properties) throws Exception {
@@ -213,10 +436,6 @@ public class MapperMethod<T> {
 		return null;
 	}
 
-	private List<T> getEntityList(String sql) throws Exception {
-		return getEntityList(sql, null);
-	}
-
 	private List<T> getEntityList(String sql, Object[] properties) throws Exception {
 		if (properties != null) {
 			resultSet = executeQuery(sql, properties);
@@ -232,32 +451,47 @@ public class MapperMethod<T> {
 
 	private ResultSet executeQuery(String sql) throws SQLException {
 		logger.debug("Execute sql: {}", sql);
-		statement = conn.prepareStatement(sql);
-		return statement.executeQuery();
+		closeResultSet();
+		return prepareStatement(sql).executeQuery();
 	}
 
 	private ResultSet executeQuery(String sql, Object[] properties) throws SQLException {
-		statement = fillStatement(sql, properties);
-		return statement.executeQuery();
+		closeResultSet();
+		return fillStatement(sql, properties).executeQuery();
 	}
 
-	private boolean executeUpdate(String sql) throws SQLException {
-		logger.debug("Execute sql: {}", sql);
-		statement = conn.prepareStatement(sql);
-		return statement.executeUpdate() >= 1;
+	/**
+	 * 缓存的语句不会关闭，上一个结果集要在这里关掉
+	 */
+	private void closeResultSet() throws SQLException {
+		if (resultSet != null) {
+			resultSet.close();
+			resultSet = null;
+		}
 	}
 
 	private boolean executeUpdate(String sql, Object[] properties) throws SQLException {
-		statement = fillStatement(sql, properties);
-		return statement.executeUpdate() >= 1;
+		return fillStatement(sql, properties).executeUpdate() >= 1;
 	}
 
 	private PreparedStatement fillStatement(String sql, Object[] properties) throws SQLException {
 		logger.debug("Execute sql: {}, parameters: {}", sql, Arrays.toString(properties));
-		PreparedStatement statement = conn.prepareStatement(sql);
+		PreparedStatement statement = prepareStatement(sql);
 		for (int i = 0; i < properties.length; i++) {
 			statement.setObject(i + 1, properties[i]);
 		}
 		return statement;
 	}
+
+	/**
+	 * 同一次调用中相同的SQL复用同一个语句，release时统一归还
+	 */
+	private PreparedStatement prepareStatement(String sql) throws SQLException {
+		PreparedStatement statement = statements.get(sql);
+		if (statement == null) {
+			statement = DBConnectionPool.prepareStatement(conn, sql);
+			statements.put(sql, statement);
+		}
+		return statement;
+	}
 }
@@ -0,0 +1,184 @@
+package com.zhukai.framework.fast.rest.jdbc.data.jpa;
+
+import java.lang.reflect.Method;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.zhukai.framework.fast.rest.annotation.jpa.ExecuteUpdate;
+import com.zhukai.framework.fast.rest.annotation.jpa.QueryCondition;
+
+/**
+ * repository方法编译成的执行计划，每个方法只解析一次，之后不可变。
+ * 方法名、注解和参数类型确定操作，派生查询的条件、不分页时的SQL、参数转换和返回类型处理都在这里确定，
+ * 调用时MapperMethod只绑定参数并执行
+ */
+public final class MapperMethodPlan {
+	enum Operation {
+		EXECUTE_UPDATE, QUERY, FIND_ONE, EXISTS, EXISTS_BY_PROPERTIES, FIND_ALL_BY_PROPERTIES, FIND_ALL_IN, DELETE, SAVE, SAVE_ALL, COUNT
+	}
+
+	enum ResultType {
+		LIST, STREAM, ITERATOR, SINGLE
+	}
+
+	enum PagingType {
+		NONE, SORT, PAGEABLE
+	}
+
+	private final Class<?> entityClass;
+	private final Operation operation;
+	private final String sql;
+	private final String queryKey;
+	private final String conditions;
+	private final ResultType resultType;
+	private final PagingType pagingType;
+	private final boolean convertArguments;
+
+	private MapperMethodPlan(Class<?> entityClass, Operation operation, String sql, String queryKey, String conditions, ResultType resultType, PagingType pagingType, boolean convertArguments) {
+		this.entityClass = entityClass;
+		this.operation = operation;
+		this.sql = sql;
+		this.queryKey = queryKey;
+		this.conditions = conditions;
+		this.resultType = resultType;
+		this.pagingType = pagingType;
+		this.convertArguments = convertArguments;
+	}
+
+	/**
+	 * @param entityClass
+	 *            repository的实体类，CrudRepository的方法被多个repository共用，计划按repository分别编译
+	 */
+	public static MapperMethodPlan compile(Method method, Class<?> entityClass) throws NoSuchMethodException {
+		if (method.isAnnotationPresent(ExecuteUpdate.class)) {
+			return new MapperMethodPlan(entityClass, Operation.EXECUTE_UPDATE, method.getAnnotation(ExecuteUpdate.class).value(), null, null, null, PagingType.NONE, false);
+		}
+		if (method.isAnnotationPresent(QueryCondition.class)) {
+			String queryCondition = method.getAnnotation(QueryCondition.class).value();
+			return query(method, entityClass, "condition:" + queryCondition, queryCondition, false);
+		}
+		String methodName = method.getName();
+		Class<?>[] parameterTypes = method.getParameterTypes();
+		Class<?> firstType = parameterTypes.length > 0 ? parameterTypes[0] : null;
+		switch (methodName) {
+			case "findOne":
+				return operation(entityClass, Operation.FIND_ONE);
+			case "exists":
+				return operation(entityClass, Object[].class.equals(firstType) ? Operation.EXISTS_BY_PROPERTIES : Operation.EXISTS);
+			case "findAll":
+				if (Object[].class.equals(firstType)) {
+					return operation(entityClass, Operation.FIND_ALL_BY_PROPERTIES);
+				} else if (firstType != null && List.class.isAssignableFrom(firstType)) {
+					return operation(entityClass, Operation.FIND_ALL_IN);
+				}
+				return query(method, entityClass, "all", null, false);
+			case "streamAll":
+				return query(method, entityClass, "all", null, false);
+			case "delete":
+				return operation(entityClass, Operation.DELETE);
+			case "save":
+				return operation(entityClass, firstType != null && List.class.isAssignableFrom(firstType) ? Operation.SAVE_ALL : Operation.SAVE);
+			case "count":
+				return operation(entityClass, Operation.COUNT);
+		}
+		if (methodName.startsWith("findBy")) {
+			return query(method, entityClass, methodName, getFindByConditions(entityClass, methodName), true);
+		}
+		throw new NoSuchMethodException(methodName + " is not exists");
+	}
+
+	private static MapperMethodPlan operation(Class<?> entityClass, Operation operation) {
+		return new MapperMethodPlan(entityClass, operation, null, null, null, null, PagingType.NONE, false);
+	}
+
+	/**
+	 * 最后一个参数是Pageable或Sort时查询时再生成SQL，否则这里生成
+	 */
+	private static MapperMethodPlan query(Method method, Class<?> entityClass, String queryKey, String conditions, boolean convertArguments) {
+		Class<?> returnType = method.getReturnType();
+		ResultType resultType;
+		if (List.class.isAssignableFrom(returnType)) {
+			resultType = ResultType.LIST;
+		} else if (Stream.class.isAssignableFrom(returnType)) {
+			resultType = ResultType.STREAM;
+		} else if (CloseableIterator.class.isAssignableFrom(returnType)) {
+			resultType = ResultType.ITERATOR;
+		} else if (Iterator.class.isAssignableFrom(returnType)) {
+			// 普通Iterator中途放弃时无法关闭，连接会一直被占用
+			throw new IllegalArgumentException("Method " + method.getName() + " should return CloseableIterator instead of Iterator");
+		} else {
+			resultType = ResultType.SINGLE;
+		}
+		PagingType pagingType = PagingType.NONE;
+		Class<?>[] parameterTypes = method.getParameterTypes();
+		if (parameterTypes.length > 0) {
+			Class<?> lastType = parameterTypes[parameterTypes.length - 1];
+			if (Pageable.class.isAssignableFrom(lastType)) {
+				pagingType = PagingType.PAGEABLE;
+			} else if (Sort.class.isAssignableFrom(lastType)) {
+				pagingType = PagingType.SORT;
+			}
+		}
+		String sql = JpaUtil.getQuerySQL(entityClass, queryKey, conditions, null, null);
+		if (resultType == ResultType.SINGLE) {
+			sql += " LIMIT 1 ";
+		}
+		return new MapperMethodPlan(entityClass, Operation.QUERY, sql, queryKey, conditions, resultType, pagingType, convertArguments);
+	}
+
+	/** 条件使用"表名.列名"，与join的实体表有同名列时不会有歧义 */
+	private static String getFindByConditions(Class<?> entityClass, String methodName) {
+		StringBuilder propertiesSql = new StringBuilder();
+		String propertiesString = methodName.substring(6);
+		String[] arr = propertiesString.split("And|Or");
+		for (int i = 0; i < arr.length; i++) {
+			propertiesSql.append(JpaUtil.getQualifiedColumnName(entityClass, StringUtils.uncapitalize(arr[i]))).append("=?");
+			String afterString = propertiesString.substring(propertiesString.indexOf(arr[i]) + arr[i].length());
+			if (afterString.startsWith("And")) {
+				propertiesSql.append(" AND ");
+			} else if (afterString.startsWith("Or")) {
+				propertiesSql.append(" OR ");
+			}
+		}
+		return propertiesSql.toString();
+	}
+
+	/**
+	 * 带排序或分页时的查询SQL，模板由JpaUtil缓存
+	 */
+	String getQuerySQL(Sort sort, Pageable pageable) {
+		if (resultType == ResultType.SINGLE) {
+			return JpaUtil.getQuerySQL(entityClass, queryKey, conditions, sort, null) + " LIMIT 1 ";
+		}
+		return JpaUtil.getQuerySQL(entityClass, queryKey, conditions, sort, pageable);
+	}
+
+	Class<?> getEntityClass() {
+		return entityClass;
+	}
+
+	Operation getOperation() {
+		return operation;
+	}
+
+	/** @ExecuteUpdate的SQL，或不带排序和分页时的查询SQL */
+	String getSql() {
+		return sql;
+	}
+
+	ResultType getResultType() {
+		return resultType;
+	}
+
+	PagingType getPagingType() {
+		return pagingType;
+	}
+
+	/** 派生查询的参数中的实体要转换成主键 */
+	boolean isConvertArguments() {
+		return convertArguments;
+	}
+}
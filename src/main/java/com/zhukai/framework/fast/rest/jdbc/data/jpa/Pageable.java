@@ -0,0 +1,77 @@
+package com.zhukai.framework.fast.rest.jdbc.data.jpa;
+
+/**
+ * 分页参数，作为repository方法的最后一个参数。
+ * of按页码分页，生成LIMIT ?, ?；after是键集分页，按主键升序取lastId之后的size行，
+ * 翻到很深的页时不需要数据库扫描并丢弃前面的行
+ */
+public class Pageable {
+	private final int page;
+	private final int size;
+	private final Sort sort;
+	private final boolean keyset;
+	private final Object lastId;
+
+	private Pageable(int page, int size, Sort sort, boolean keyset, Object lastId) {
+		if (page < 0) {
+			throw new IllegalArgumentException("Page index must not be less than zero");
+		}
+		if (size < 1) {
+			throw new IllegalArgumentException("Page size must not be less than one");
+		}
+		this.page = page;
+		this.size = size;
+		this.sort = sort;
+		this.keyset = keyset;
+		this.lastId = lastId;
+	}
+
+	/**
+	 * @param page
+	 *            从0开始的页码
+	 */
+	public static Pageable of(int page, int size) {
+		return new Pageable(page, size, null, false, null);
+	}
+
+	public static Pageable of(int page, int size, Sort sort) {
+		return new Pageable(page, size, sort, false, null);
+	}
+
+	/**
+	 * @param lastId
+	 *            上一页最后一行的主键，取第一页时为null
+	 */
+	public static Pageable after(Object lastId, int size) {
+		return new Pageable(0, size, null, true, lastId);
+	}
+
+	public int getPage() {
+		return page;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public long getOffset() {
+		return (long) page * size;
+	}
+
+	public Sort getSort() {
+		return sort;
+	}
+
+	public boolean isKeyset() {
+		return keyset;
+	}
+
+	public Object getLastId() {
+		return lastId;
+	}
+
+	@Override
+	public String toString() {
+		return keyset ? "Pageable{lastId=" + lastId + ", size=" + size + '}' : "Pageable{page=" + page + ", size=" + size + ", sort=" + sort + '}';
+	}
+}
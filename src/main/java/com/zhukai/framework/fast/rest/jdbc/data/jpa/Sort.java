@@ -0,0 +1,78 @@
+package com.zhukai.framework.fast.rest.jdbc.data.jpa;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * 查询排序，作为repository方法的最后一个参数。属性名是实体的属性（可以是join实体的属性，如owner.name），
+ * 生成SQL时转换成列名，不存在的属性抛出IllegalArgumentException。同一属性只按第一次出现的方向排序，最多按8列排序
+ */
+public class Sort {
+	public enum Direction {
+		ASC, DESC
+	}
+
+	public static class Order {
+		private final String property;
+		private final Direction direction;
+
+		public Order(String property, Direction direction) {
+			this.property = property;
+			this.direction = direction;
+		}
+
+		public String getProperty() {
+			return property;
+		}
+
+		public Direction getDirection() {
+			return direction;
+		}
+
+		@Override
+		public String toString() {
+			return property + " " + direction;
+		}
+	}
+
+	private final List<Order> orders;
+
+	private Sort(List<Order> orders) {
+		this.orders = Collections.unmodifiableList(orders);
+	}
+
+	public static Sort by(String... properties) {
+		return by(Direction.ASC, properties);
+	}
+
+	public static Sort by(Direction direction, String... properties) {
+		List<Order> orders = new ArrayList<>();
+		for (String property : properties) {
+			orders.add(new Order(property, direction));
+		}
+		return new Sort(orders);
+	}
+
+	public Sort and(Sort sort) {
+		List<Order> orders = new ArrayList<>(this.orders);
+		orders.addAll(sort.orders);
+		return new Sort(orders);
+	}
+
+	public List<Order> getOrders() {
+		return orders;
+	}
+
+	public boolean isEmpty() {
+		return orders.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		StringJoiner joiner = new StringJoiner(",");
+		orders.forEach(order -> joiner.add(order.toString()));
+		return joiner.toString();
+	}
+}
@@ -1,55 +1,109 @@
 package com.zhukai.framework.fast.rest.proxy;
 
-import com.zhukai.framework.fast.rest.Setup;
-import com.zhukai.framework.fast.rest.annotation.aop.Transactional;
-import com.zhukai.framework.fast.rest.bean.component.ComponentBeanFactory;
 import com.zhukai.framework.fast.rest.http.HttpContext;
 import com.zhukai.framework.fast.rest.jdbc.DBConnectionPool;
+import com.zhukai.framework.fast.rest.util.ReflectUtil;
+import net.sf.cglib.proxy.Callback;
 import net.sf.cglib.proxy.Enhancer;
 import net.sf.cglib.proxy.MethodInterceptor;
 import net.sf.cglib.proxy.MethodProxy;
+import net.sf.cglib.proxy.NoOp;
 
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.sql.Connection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * 每个目标类只生成一次代理类，之后创建实例不再生成类。
+ * 只有@Transactional或有拦截器的方法回调intercept，其他方法由NoOp直接调用父类方法
+ */
 public class AopProxy implements MethodInterceptor {
+	private static final Map<Class<?>, AopProxy> proxies = new ConcurrentHashMap<>();
+	private static final AopProxy NONE = new AopProxy();
+	private static final int INTERCEPT = 0;
+	private static final int DIRECT = 1;
 
-	<T> T getProxyInstance(Class<T> clazz) {
+	// 创建代理类时取得各方法的拦截链，之后只读
+	private final Map<Method, InterceptorChain> chains = new HashMap<>();
+	private Class<?> proxyClass;
+
+	private AopProxy() {
+	}
+
+	/**
+	 * @return 没有需要代理的方法时返回null
+	 */
+	static AopProxy of(Class<?> clazz) {
+		AopProxy aopProxy = proxies.computeIfAbsent(clazz, key -> {
+			AopProxy created = new AopProxy();
+			created.addChains(key);
+			if (created.chains.isEmpty()) {
+				return NONE;
+			}
+			created.createProxyClass(key);
+			return created;
+		});
+		return aopProxy == NONE ? null : aopProxy;
+	}
+
+	private void addChains(Class<?> clazz) {
+		for (Method method : clazz.getMethods()) {
+			addChain(method);
+		}
+		for (Class<?> superClass = clazz; superClass != null && superClass != Object.class; superClass = superClass.getSuperclass()) {
+			for (Method method : superClass.getDeclaredMethods()) {
+				if (!Modifier.isPrivate(method.getModifiers()) && !Modifier.isStatic(method.getModifiers())) {
+					addChain(method);
+				}
+			}
+		}
+	}
+
+	private void addChain(Method method) {
+		InterceptorChain chain = InterceptorChain.of(method);
+		if (chain != null) {
+			chains.putIfAbsent(method, chain);
+		}
+	}
+
+	private void createProxyClass(Class<?> clazz) {
 		Enhancer enhancer = new Enhancer();
 		enhancer.setSuperclass(clazz);
-		enhancer.setCallback(this);
-		return clazz.cast(enhancer.create());
+		enhancer.setUseCache(false);
+		enhancer.setCallbackTypes(new Class[]{MethodInterceptor.class, NoOp.class});
+		enhancer.setCallbackFilter(method -> chains.containsKey(method) ? INTERCEPT : DIRECT);
+		proxyClass = enhancer.createClass();
+		Enhancer.registerStaticCallbacks(proxyClass, new Callback[]{this, NoOp.INSTANCE});
+	}
+
+	<T> T newInstance(Class<T> clazz) {
+		return clazz.cast(ReflectUtil.createInstance(proxyClass));
 	}
 
 	@Override
 	public Object intercept(Object obj, Method method, Object[] args, MethodProxy proxy) throws Throwable {
+		InterceptorChain chain = chains.get(method);
+		if (chain == null) {
+			return proxy.invokeSuper(obj, args);
+		}
 		Connection connection = null;
+		Connection outerTransaction = HttpContext.getTransaction();
 		try {
-			if (method.isAnnotationPresent(Transactional.class)) {
+			if (chain.isTransactional()) {
 				connection = DBConnectionPool.getConnection();
 				connection.setAutoCommit(false);
 				HttpContext.setTransaction(connection);
 			}
-			if (Setup.getMethodInterceptors().containsKey(method)) {
-				InterceptorPoint.MethodSignature signature = new InterceptorPoint.MethodSignature(method, obj, args, proxy);
-				InterceptorPoint firstPoint = null;
-				InterceptorPoint eachPoint = null;
-				for (Method interceptorMethod : Setup.getMethodInterceptors().get(method)) {
-					if (firstPoint == null) {
-						firstPoint = new InterceptorPoint(signature, interceptorMethod);
-						eachPoint = firstPoint;
-					} else {
-						eachPoint = eachPoint.setNext(new InterceptorPoint(signature, interceptorMethod));
-					}
-				}
-				return firstPoint.getAround().invoke(ComponentBeanFactory.getInstance().getBean(firstPoint.getAround().getDeclaringClass()), firstPoint);
+			if (chain.size() > 0) {
+				return new InterceptorPoint(chain, new InterceptorPoint.MethodSignature(method, obj, args, proxy)).proceed();
 			}
 			return proxy.invokeSuper(obj, args);
-		} catch (InvocationTargetException ite) {
-			throw ite.getTargetException();
 		} finally {
 			if (connection != null) {
+				HttpContext.setTransaction(outerTransaction);
 				DBConnectionPool.commit(connection);
 			}
 		}
@@ -0,0 +1,91 @@
+package com.zhukai.framework.fast.rest.proxy;
+
+import com.zhukai.framework.fast.rest.Setup;
+import com.zhukai.framework.fast.rest.annotation.aop.Transactional;
+import com.zhukai.framework.fast.rest.bean.component.ComponentBeanFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 一个被代理方法的拦截链，每个方法只编译一次，之后不可变：是否开启事务、按seq排好序的@Around方法的MethodHandle。
+ * 切面实例在第一次调用时解析（切面本身也可能被自己拦截，创建代理时解析会循环创建）
+ */
+final class InterceptorChain {
+	private static final MethodType AROUND_TYPE = MethodType.methodType(Object.class, Object.class, InterceptorPoint.class);
+	private static final Map<Method, InterceptorChain> chains = new ConcurrentHashMap<>();
+	private static final Map<Method, MethodHandle> aroundHandles = new ConcurrentHashMap<>();
+	private static final InterceptorChain NONE = new InterceptorChain(false, new Method[0]);
+
+	private final boolean transactional;
+	private final Method[] arounds;
+	private final MethodHandle[] invokers;
+	private volatile Object[] aspects;
+
+	private InterceptorChain(boolean transactional, Method[] arounds) {
+		this.transactional = transactional;
+		this.arounds = arounds;
+		this.invokers = new MethodHandle[arounds.length];
+		for (int i = 0; i < arounds.length; i++) {
+			invokers[i] = aroundHandles.computeIfAbsent(arounds[i], InterceptorChain::createInvoker);
+		}
+	}
+
+	/**
+	 * @return 方法没有@Transactional也没有拦截器时返回null
+	 */
+	static InterceptorChain of(Method method) {
+		InterceptorChain chain = chains.computeIfAbsent(method, key -> {
+			Set<Method> interceptors = Setup.getMethodInterceptors().get(key);
+			boolean transactional = key.isAnnotationPresent(Transactional.class);
+			if (!transactional && (interceptors == null || interceptors.isEmpty())) {
+				return NONE;
+			}
+			return new InterceptorChain(transactional, interceptors == null ? new Method[0] : interceptors.toArray(new Method[0]));
+		});
+		return chain == NONE ? null : chain;
+	}
+
+	private static MethodHandle createInvoker(Method around) {
+		around.setAccessible(true);
+		try {
+			MethodHandle handle = MethodHandles.lookup().unreflect(around);
+			if (Modifier.isStatic(around.getModifiers())) {
+				handle = MethodHandles.dropArguments(handle, 0, Object.class);
+			}
+			return handle.asType(AROUND_TYPE);
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException("Around method " + around + " is not accessible", e);
+		}
+	}
+
+	boolean isTransactional() {
+		return transactional;
+	}
+
+	int size() {
+		return invokers.length;
+	}
+
+	Object invoke(int index, InterceptorPoint point) throws Throwable {
+		return (Object) invokers[index].invokeExact(getAspects()[index], point);
+	}
+
+	private Object[] getAspects() {
+		Object[] resolved = aspects;
+		if (resolved == null) {
+			resolved = new Object[arounds.length];
+			for (int i = 0; i < arounds.length; i++) {
+				resolved[i] = ComponentBeanFactory.getInstance().getBean(arounds[i].getDeclaringClass());
+			}
+			aspects = resolved;
+		}
+		return resolved;
+	}
+}
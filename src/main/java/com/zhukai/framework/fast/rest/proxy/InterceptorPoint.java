@@ -1,40 +1,37 @@
 package com.zhukai.framework.fast.rest.proxy;
 
-import com.zhukai.framework.fast.rest.bean.component.ComponentBeanFactory;
 import net.sf.cglib.proxy.MethodProxy;
 
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 
+/**
+ * 一次被拦截的调用，整个拦截链共用一个实例，proceed按序号调用下一个@Around方法，最后调用目标方法
+ */
 public class InterceptorPoint {
-	private Method around;
-	private MethodSignature signature;
-	private InterceptorPoint next;
+	private final InterceptorChain chain;
+	private final MethodSignature signature;
+	private int index = -1;// 正在执行的@Around方法的序号
 
-	InterceptorPoint(MethodSignature signature, Method around) {
+	InterceptorPoint(InterceptorChain chain, MethodSignature signature) {
+		this.chain = chain;
 		this.signature = signature;
-		this.around = around;
 	}
 
 	public MethodSignature getSignature() {
 		return signature;
 	}
 
-	Method getAround() {
-		return around;
-	}
-
-	InterceptorPoint setNext(InterceptorPoint next) {
-		this.next = next;
-		return next;
-	}
-
+	/**
+	 * 调用返回后恢复序号，同一个@Around方法可以多次调用proceed（如重试）
+	 */
 	public Object proceed() throws Throwable {
-		if (next != null) {
+		int position = index + 1;
+		if (position < chain.size()) {
+			index = position;
 			try {
-				return next.around.invoke(ComponentBeanFactory.getInstance().getBean(next.around.getDeclaringClass()), next);
-			} catch (InvocationTargetException ite) {
-				throw ite.getTargetException();
+				return chain.invoke(position, this);
+			} finally {
+				index = position - 1;
 			}
 		}
 		return signature.proxy.invokeSuper(signature.object, signature.args);
@@ -66,4 +63,3 @@ public class InterceptorPoint {
 		}
 	}
 }
-
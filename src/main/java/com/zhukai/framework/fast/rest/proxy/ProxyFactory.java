@@ -1,23 +1,17 @@
 package com.zhukai.framework.fast.rest.proxy;
 
-import com.zhukai.framework.fast.rest.Setup;
-import com.zhukai.framework.fast.rest.annotation.aop.Transactional;
 import com.zhukai.framework.fast.rest.annotation.jpa.Repository;
 import com.zhukai.framework.fast.rest.util.ReflectUtil;
 
-import java.lang.reflect.Method;
-
 public class ProxyFactory {
 
 	public static Object createInstance(Class clazz) {
 		if (clazz.isAnnotationPresent(Repository.class)) {
 			return new RepositoryProxy().getProxyInstance(clazz);
 		}
-		Method[] methods = clazz.getMethods();
-		for (Method method : methods) {
-			if (method.isAnnotationPresent(Transactional.class) || Setup.getMethodInterceptors().get(method) != null) {
-				return new AopProxy().getProxyInstance(clazz);
-			}
+		AopProxy aopProxy = AopProxy.of(clazz);
+		if (aopProxy != null) {
+			return aopProxy.newInstance(clazz);
 		}
 		return ReflectUtil.createInstance(clazz);
 	}
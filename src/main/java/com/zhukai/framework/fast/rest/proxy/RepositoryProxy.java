@@ -2,29 +2,46 @@ package com.zhukai.framework.fast.rest.proxy;
 
 import com.zhukai.framework.fast.rest.http.HttpContext;
 import com.zhukai.framework.fast.rest.jdbc.data.jpa.MapperMethod;
+import com.zhukai.framework.fast.rest.jdbc.data.jpa.MapperMethodPlan;
 
 import java.lang.reflect.*;
 import java.sql.Connection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class RepositoryProxy implements InvocationHandler {
 
-	private Class mapperInterface;
+	private Class<?> entityClass;
+	// 每个repository方法只编译一次，CrudRepository的方法被多个repository共用，所以按代理分别缓存
+	private final Map<Method, MapperMethodPlan> plans = new ConcurrentHashMap<>();
 
 	<T> T getProxyInstance(Class<T> mapperInterface) {
-		this.mapperInterface = mapperInterface;
+		Type[] actualTypes = ((ParameterizedType) mapperInterface.getGenericInterfaces()[0]).getActualTypeArguments();
+		this.entityClass = (Class<?>) actualTypes[0];
 		Object object = Proxy.newProxyInstance(this.getClass().getClassLoader(), new Class[]{mapperInterface}, this);
 		return mapperInterface.cast(object);
 	}
 
 	@Override
-	@SuppressWarnings("unchecked")
 	public Object invoke(Object proxy, Method method, Object[] args) throws Exception {
-		Type[] actualTypes = ((ParameterizedType) mapperInterface.getGenericInterfaces()[0]).getActualTypeArguments();
-		Class<?> entityClass = (Class<?>) actualTypes[0];
 		Connection conn = HttpContext.getTransaction();
-		MapperMethod mapperMethod = new MapperMethod(method, args, entityClass, conn);
-		Object result = mapperMethod.execute();
-		mapperMethod.release();
-		return result;
+		MapperMethod<?> mapperMethod = new MapperMethod<>(getPlan(method), args, conn);
+		try {
+			return mapperMethod.execute();
+		} finally {
+			mapperMethod.release();
+		}
+	}
+
+	private MapperMethodPlan getPlan(Method method) throws NoSuchMethodException {
+		MapperMethodPlan plan = plans.get(method);
+		if (plan == null) {
+			plan = MapperMethodPlan.compile(method, entityClass);
+			MapperMethodPlan existing = plans.putIfAbsent(method, plan);
+			if (existing != null) {
+				plan = existing;
+			}
+		}
+		return plan;
 	}
 }
@@ -0,0 +1,38 @@
+package com.zhukai.framework.fast.rest.server;
+
+import com.zhukai.framework.fast.rest.util.BufferPool;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * pooled的缓冲属于本对象，release时归还，之后不再持有，重复release不会归还两次
+ */
+class BufferData implements OutboundData {
+	private final ByteBuffer buffer;
+	private boolean pooled;
+
+	BufferData(ByteBuffer buffer, boolean pooled) {
+		this.buffer = buffer;
+		this.pooled = pooled;
+	}
+
+	@Override
+	public long remaining() {
+		return buffer.remaining();
+	}
+
+	@Override
+	public long writeTo(SocketChannel channel) throws IOException {
+		return channel.write(buffer);
+	}
+
+	@Override
+	public void release() {
+		if (pooled) {
+			pooled = false;
+			BufferPool.release(buffer);
+		}
+	}
+}
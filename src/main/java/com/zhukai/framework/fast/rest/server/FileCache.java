@@ -0,0 +1,138 @@
+package com.zhukai.framework.fast.rest.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 小的热点文件的内存缓存，同一文件被请求HOT_REQUESTS次后一次读进直接缓冲，之后直接放进outbound队列。
+ * 缓存的是读出的内容而不是内存映射，文件被截断不会影响正在发送的缓冲；
+ * 每次使用前按修改时间和长度校验，文件变化后重新读取。其他文件由FileRegion用transferTo发送
+ */
+class FileCache {
+	private static final long MAX_FILE_SIZE = 256 * 1024;
+	private static final int MAX_ENTRIES = 512;
+	private static final long MAX_CACHED_BYTES = 32 * 1024 * 1024;
+	private static final int HOT_REQUESTS = 2;
+	private static final ByteBuffer FREED = ByteBuffer.allocate(0);
+
+	private static final Map<String, CachedFile> cache = new ConcurrentHashMap<>();
+	private static final AtomicLong cachedBytes = new AtomicLong();
+
+	/**
+	 * @return 缓存内容的独立视图，文件太大、还不够热、缓存已满或正在被修改时返回null
+	 */
+	static ByteBuffer get(File file) throws IOException {
+		long length = file.length();
+		if (length > MAX_FILE_SIZE) {
+			return null;
+		}
+		String path = file.getAbsolutePath();
+		long lastModified = file.lastModified();
+		CachedFile cachedFile = cache.get(path);
+		if (cachedFile == null || cachedFile.lastModified != lastModified || cachedFile.length != length) {
+			CachedFile created = new CachedFile(lastModified, length);
+			if (cachedFile == null) {
+				evictIfFull();
+				if (cache.putIfAbsent(path, created) != null) {
+					return null;
+				}
+			} else if (cache.replace(path, cachedFile, created)) {
+				cachedFile.free();
+			} else {
+				return null;
+			}
+			cachedFile = created;
+		}
+		return cachedFile.get(file);
+	}
+
+	/** 条目数达到上限时随机淘汰一个，不维护访问顺序，读取时不需要加锁 */
+	private static void evictIfFull() {
+		if (cache.size() < MAX_ENTRIES) {
+			return;
+		}
+		Iterator<CachedFile> iterator = cache.values().iterator();
+		if (iterator.hasNext()) {
+			CachedFile evicted = iterator.next();
+			iterator.remove();
+			evicted.free();
+		}
+	}
+
+	private static class CachedFile {
+		private final long lastModified;
+		private final long length;
+		private final AtomicInteger requests = new AtomicInteger();
+		private final AtomicBoolean loading = new AtomicBoolean();
+		private final AtomicReference<ByteBuffer> buffer = new AtomicReference<>();
+
+		private CachedFile(long lastModified, long length) {
+			this.lastModified = lastModified;
+			this.length = length;
+		}
+
+		private ByteBuffer get(File file) throws IOException {
+			ByteBuffer cached = buffer.get();
+			if (cached != null) {
+				return cached == FREED ? null : cached.duplicate();
+			}
+			if (requests.incrementAndGet() < HOT_REQUESTS || !loading.compareAndSet(false, true)) {
+				return null;
+			}
+			if (cachedBytes.addAndGet(length) > MAX_CACHED_BYTES) {
+				cachedBytes.addAndGet(-length);
+				loading.set(false);
+				return null;
+			}
+			ByteBuffer loaded = null;
+			try {
+				loaded = read(file);
+			} finally {
+				if (loaded == null || !buffer.compareAndSet(null, loaded)) {
+					cachedBytes.addAndGet(-length);
+					loading.set(false);
+				}
+			}
+			return loaded != null && buffer.get() == loaded ? loaded.duplicate() : null;
+		}
+
+		/**
+		 * @return 读出的只读缓冲，文件长度与校验时不同（正在被修改）时返回null
+		 */
+		private ByteBuffer read(File file) throws IOException {
+			try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+				if (channel.size() != length) {
+					return null;
+				}
+				ByteBuffer data = ByteBuffer.allocateDirect((int) length);
+				while (data.hasRemaining()) {
+					if (channel.read(data) == -1) {
+						return null;
+					}
+				}
+				data.flip();
+				return data.asReadOnlyBuffer();
+			}
+		}
+
+		private void free() {
+			ByteBuffer old = buffer.getAndSet(FREED);
+			if (old != null && old != FREED) {
+				cachedBytes.addAndGet(-length);
+			}
+		}
+	}
+
+	private FileCache() {
+	}
+}
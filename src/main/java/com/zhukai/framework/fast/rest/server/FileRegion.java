@@ -0,0 +1,51 @@
+package com.zhukai.framework.fast.rest.server;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 文件数据，通过FileChannel.transferTo直接从页缓存发送到socket，不经过用户态缓冲
+ */
+class FileRegion implements OutboundData {
+	private static final Logger logger = LoggerFactory.getLogger(FileRegion.class);
+
+	private final FileChannel fileChannel;
+	private final long end;
+	private long position;
+
+	FileRegion(File file) throws IOException {
+		fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		end = fileChannel.size();
+	}
+
+	@Override
+	public long remaining() {
+		return end - position;
+	}
+
+	@Override
+	public long writeTo(SocketChannel channel) throws IOException {
+		long written = fileChannel.transferTo(position, end - position, channel);
+		if (written == 0 && fileChannel.size() < end) {
+			// 文件在发送中被截断，已发送的Content-Length无法满足，只能关闭连接
+			throw new IOException("File is truncated while sending");
+		}
+		position += written;
+		return written;
+	}
+
+	@Override
+	public void release() {
+		try {
+			fileChannel.close();
+		} catch (IOException e) {
+			logger.debug("Close file channel error", e);
+		}
+	}
+}
@@ -3,7 +3,11 @@ package com.zhukai.framework.fast.rest.server;
 import com.zhukai.framework.fast.rest.config.ServerConfig;
 import com.zhukai.framework.fast.rest.factory.ExecutorFactory;
 import com.zhukai.framework.fast.rest.handle.ActionHandle;
+import com.zhukai.framework.fast.rest.http.HttpParser;
 import com.zhukai.framework.fast.rest.util.Resources;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.net.ServerSocketFactory;
 import javax.net.ssl.KeyManagerFactory;
@@ -11,11 +15,16 @@ import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLServerSocket;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.security.KeyStore;
+import java.util.concurrent.RejectedExecutionException;
 
 public class HttpServerSSL extends Server {
+	private static final Logger logger = LoggerFactory.getLogger(HttpServerSSL.class);
+	private static final int REJECT_TIMEOUT = 1000;
+
 	private ServerSocket serverSocket;
 
 	public HttpServerSSL(ServerConfig config) throws Exception {
@@ -39,7 +48,27 @@ public class HttpServerSSL extends Server {
 	public void start() throws IOException {
 		while (true) {
 			Socket socket = serverSocket.accept();
-			ExecutorFactory.getHandleExecutor().execute(new ActionHandle(socket));
+			try {
+				ExecutorFactory.getHandleExecutor().execute(new ActionHandle(socket));
+			} catch (RejectedExecutionException e) {
+				reject(socket);
+			}
+		}
+	}
+
+	/**
+	 * 处理线程池已满，不读取请求直接返回503，握手和写出有超时，避免阻塞accept
+	 */
+	private void reject(Socket socket) {
+		try {
+			socket.setSoTimeout(REJECT_TIMEOUT);
+			OutputStream out = socket.getOutputStream();
+			out.write(HttpParser.createServiceUnavailable(null));
+			out.flush();
+		} catch (IOException e) {
+			logger.debug("Reject connection error", e);
+		} finally {
+			IOUtils.closeQuietly(socket);
 		}
 	}
 
@@ -0,0 +1,346 @@
+package com.zhukai.framework.fast.rest.server;
+
+import com.zhukai.framework.fast.rest.FastRestApplication;
+import com.zhukai.framework.fast.rest.config.ServerConfig;
+import com.zhukai.framework.fast.rest.exception.HttpParseException;
+import com.zhukai.framework.fast.rest.exception.PayloadTooLargeException;
+import com.zhukai.framework.fast.rest.factory.ExecutorFactory;
+import com.zhukai.framework.fast.rest.handle.ActionHandleNIO;
+import com.zhukai.framework.fast.rest.http.HttpParser;
+import com.zhukai.framework.fast.rest.http.HttpResponse;
+import com.zhukai.framework.fast.rest.http.request.HttpRequest;
+import com.zhukai.framework.fast.rest.http.request.HttpRequestParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Queue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 一个NIO连接的状态，挂在SelectionKey上。
+ * 同一连接上的请求按到达顺序逐个处理，响应写完后才处理下一个，保证pipelining的响应顺序。
+ * 处理线程通过write把响应数据放进outbound队列，worker线程在通道可写时写出；
+ * 待写出的数据超过高水位时处理线程阻塞，降到低水位以下再继续
+ */
+public class NioConnection {
+	private static final Logger logger = LoggerFactory.getLogger(NioConnection.class);
+	private static final int MAX_PIPELINED_REQUESTS = 16;
+	private static final long HIGH_WATER_MARK = 256 * 1024;
+	private static final long LOW_WATER_MARK = 64 * 1024;
+
+	private final SelectorWorker worker;
+	private final SocketChannel channel;
+	private final SelectionKey key;
+	private final HttpRequestParser parser;
+	private final Queue<HttpRequest> pendingRequests = new ArrayDeque<>();
+	private boolean processing;
+	private boolean inputClosed;
+	private long lastActiveTime = System.currentTimeMillis();
+
+	private final ReentrantLock outboundLock = new ReentrantLock();
+	private final Condition outboundWritable = outboundLock.newCondition();
+	private final Deque<OutboundData> outbound = new ArrayDeque<>();
+	private long outboundBytes;
+	private boolean flushScheduled;
+	private boolean responseCompleted;
+	private boolean responseKeepAlive;
+	private volatile boolean closed;
+
+	NioConnection(SelectorWorker worker, SocketChannel channel, SelectionKey key) {
+		this.worker = worker;
+		this.channel = channel;
+		this.key = key;
+		this.parser = new HttpRequestParser(FastRestApplication.getServerConfig().getCharset(), FastRestApplication.getServerConfig().getMaxRequestBodySize());
+	}
+
+	/**
+	 * 处理线程调用，把一段响应数据放进outbound队列，待写出数据过多时阻塞
+	 */
+	public void write(ByteBuffer buffer) throws IOException {
+		enqueue(new BufferData(buffer, false));
+	}
+
+	/**
+	 * 同write(ByteBuffer)，buffer来自BufferPool，调用后归连接所有，写出、连接关闭或放入失败时由连接归还
+	 */
+	public void writePooled(ByteBuffer buffer) throws IOException {
+		enqueue(new BufferData(buffer, true));
+	}
+
+	/**
+	 * 处理线程调用，发送文件响应。小的热点文件使用FileCache，其他用transferTo发送；
+	 * 先打开要发送的数据，Content-Length按实际发送的字节数设置，不会与响应体不一致
+	 */
+	public void writeFile(HttpResponse response, File file) throws IOException {
+		ByteBuffer cached = FileCache.get(file);
+		OutboundData body = cached != null ? new BufferData(cached, false) : new FileRegion(file);
+		try {
+			response.setContentLength(body.remaining());
+			write(ByteBuffer.wrap(HttpParser.parseHttpString(response).getBytes(response.getCharacterEncoding())));
+		} catch (IOException e) {
+			body.release();
+			throw e;
+		}
+		enqueue(body);
+	}
+
+	/**
+	 * 处理线程调用，标记当前响应的数据已全部放进outbound队列
+	 */
+	public void complete(boolean keepAlive) {
+		boolean scheduleFlush;
+		outboundLock.lock();
+		try {
+			responseCompleted = true;
+			responseKeepAlive = keepAlive;
+			scheduleFlush = !flushScheduled;
+			flushScheduled = true;
+		} finally {
+			outboundLock.unlock();
+		}
+		if (scheduleFlush) {
+			worker.execute(this::flushQuietly);
+		}
+	}
+
+	/**
+	 * 处理线程调用，响应写到一半失败时关闭连接
+	 */
+	public void abort() {
+		worker.execute(this::close);
+	}
+
+	void read(ByteBuffer readBuffer) throws IOException, HttpParseException {
+		readBuffer.clear();
+		if (channel.read(readBuffer) == -1) {
+			inputClosed = true;
+			if (!processing && pendingRequests.isEmpty()) {
+				close();
+				return;
+			}
+			updateInterestOps(hasOutbound());
+			return;
+		}
+		lastActiveTime = System.currentTimeMillis();
+		readBuffer.flip();
+		HttpRequest request;
+		try {
+			while ((request = parser.parse(readBuffer)) != null) {
+				pendingRequests.add(request);
+			}
+		} catch (PayloadTooLargeException e) {
+			rejectPayload(e);
+			return;
+		}
+		dispatchNext();
+		updateInterestOps(hasOutbound());
+	}
+
+	void flush() throws IOException {
+		boolean keepAlive;
+		outboundLock.lock();
+		try {
+			OutboundData data;
+			while ((data = outbound.peek()) != null) {
+				long written = data.writeTo(channel);
+				if (written > 0) {
+					outboundBytes -= written;
+					lastActiveTime = System.currentTimeMillis();
+				}
+				if (data.remaining() > 0) {
+					break;
+				}
+				outbound.poll().release();
+			}
+			if (outboundBytes < LOW_WATER_MARK) {
+				outboundWritable.signalAll();
+			}
+			if (!outbound.isEmpty() || !responseCompleted) {
+				flushScheduled = !outbound.isEmpty();
+				updateInterestOps(flushScheduled);
+				return;
+			}
+			flushScheduled = false;
+			responseCompleted = false;
+			keepAlive = responseKeepAlive;
+		} finally {
+			outboundLock.unlock();
+		}
+		processing = false;
+		if (!keepAlive || (inputClosed && pendingRequests.isEmpty())) {
+			close();
+			return;
+		}
+		dispatchNext();
+		updateInterestOps(false);
+	}
+
+	/**
+	 * 响应写出停滞时按writeTimeout，请求读到一半时按readTimeout，两个请求之间按keepAliveTimeout，
+	 * keepAliveTimeout不大于0（不保持连接）时第一个请求也按readTimeout。超时不大于0时不关闭
+	 */
+	boolean isTimeout(long now) {
+		if (!pendingRequests.isEmpty() || (processing && !hasOutbound())) {
+			return false;
+		}
+		ServerConfig config = FastRestApplication.getServerConfig();
+		long timeout;
+		if (processing) {
+			timeout = config.getWriteTimeout();
+		} else if (parser.isIdle() && config.getKeepAliveTimeout() > 0) {
+			timeout = config.getKeepAliveTimeout();
+		} else {
+			timeout = config.getReadTimeout();
+		}
+		return timeout > 0 && now - lastActiveTime > timeout;
+	}
+
+	void close() {
+		closed = true;
+		key.cancel();
+		try {
+			channel.close();
+		} catch (IOException e) {
+			logger.debug("Close channel error", e);
+		}
+		outboundLock.lock();
+		try {
+			outbound.forEach(OutboundData::release);
+			outbound.clear();
+			outboundBytes = 0;
+			outboundWritable.signalAll();
+		} finally {
+			outboundLock.unlock();
+		}
+	}
+
+	private void enqueue(OutboundData data) throws IOException {
+		boolean queued = false;
+		boolean scheduleFlush;
+		outboundLock.lock();
+		try {
+			long nanos = TimeUnit.MILLISECONDS.toNanos(FastRestApplication.getServerConfig().getWriteTimeout());
+			while (outboundBytes >= HIGH_WATER_MARK && !closed) {
+				if (nanos <= 0L) {
+					throw new SocketTimeoutException("Write response timeout");
+				}
+				nanos = outboundWritable.awaitNanos(nanos);
+			}
+			if (closed) {
+				throw new ClosedChannelException();
+			}
+			outbound.add(data);
+			queued = true;
+			outboundBytes += data.remaining();
+			scheduleFlush = !flushScheduled;
+			flushScheduled = true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Write response interrupted", e);
+		} finally {
+			outboundLock.unlock();
+			if (!queued) {
+				data.release();
+			}
+		}
+		if (scheduleFlush) {
+			worker.execute(this::flushQuietly);
+		}
+	}
+
+	private void flushQuietly() {
+		if (closed) {
+			return;
+		}
+		try {
+			flush();
+		} catch (IOException e) {
+			logger.debug("Write response error", e);
+			close();
+		}
+	}
+
+	private boolean hasOutbound() {
+		outboundLock.lock();
+		try {
+			return !outbound.isEmpty();
+		} finally {
+			outboundLock.unlock();
+		}
+	}
+
+	private void dispatchNext() {
+		if (processing || pendingRequests.isEmpty()) {
+			return;
+		}
+		processing = true;
+		HttpRequest request = pendingRequests.poll();
+		try {
+			ExecutorFactory.getHandleExecutor().execute(new ActionHandleNIO(request, this));
+		} catch (RejectedExecutionException e) {
+			rejectRequest(request);
+		}
+	}
+
+	/**
+	 * 处理线程池已满，在worker线程中直接返回503并关闭连接，后面排队的请求一并丢弃
+	 */
+	private void rejectRequest(HttpRequest request) {
+		logger.debug("Handle executor is full, reject request: {}", request.getPath());
+		pendingRequests.clear();
+		inputClosed = true;
+		try {
+			write(ByteBuffer.wrap(HttpParser.createServiceUnavailable(request.getProtocol())));
+			complete(false);
+		} catch (IOException e) {
+			logger.debug("Write response error", e);
+			close();
+		}
+	}
+
+	/**
+	 * 请求体过大，不再读取。前面没有未完成的请求时在worker线程中直接返回413，否则无法按顺序响应，直接关闭连接
+	 */
+	private void rejectPayload(PayloadTooLargeException e) throws PayloadTooLargeException {
+		if (processing || !pendingRequests.isEmpty()) {
+			throw e;
+		}
+		logger.debug("Reject request", e);
+		inputClosed = true;
+		processing = true;
+		try {
+			write(ByteBuffer.wrap(HttpParser.createPayloadTooLarge(null)));
+			complete(false);
+			updateInterestOps(hasOutbound());
+		} catch (IOException ioe) {
+			logger.debug("Write response error", ioe);
+			close();
+		}
+	}
+
+	private void updateInterestOps(boolean writePending) {
+		if (!key.isValid()) {
+			return;
+		}
+		int ops = 0;
+		if (!inputClosed && pendingRequests.size() < MAX_PIPELINED_REQUESTS) {
+			ops |= SelectionKey.OP_READ;
+		}
+		if (writePending) {
+			ops |= SelectionKey.OP_WRITE;
+		}
+		key.interestOps(ops);
+	}
+}
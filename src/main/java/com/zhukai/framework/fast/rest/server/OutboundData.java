@@ -0,0 +1,19 @@
+package com.zhukai.framework.fast.rest.server;
+
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
+
+/**
+ * outbound队列中一段待写出的数据
+ */
+interface OutboundData {
+
+	long remaining();
+
+	/**
+	 * @return 本次写出的字节数，通道缓冲区满时可能为0
+	 */
+	long writeTo(SocketChannel channel) throws IOException;
+
+	void release();
+}
@@ -0,0 +1,122 @@
+package com.zhukai.framework.fast.rest.server;
+
+import com.zhukai.framework.fast.rest.Constants;
+import com.zhukai.framework.fast.rest.exception.HttpParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 工作线程的selector，负责已建立连接的读写，连接由HttpServer的acceptor轮询分配
+ */
+class SelectorWorker implements Runnable {
+	private static final Logger logger = LoggerFactory.getLogger(SelectorWorker.class);
+	private static final long IDLE_CHECK_INTERVAL = 1000L;
+
+	private final Selector selector;
+	private final Queue<Runnable> pendingTasks = new ConcurrentLinkedQueue<>();
+	private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(Constants.READ_BUFFER_SIZE);
+	private long lastIdleCheckTime = System.currentTimeMillis();
+
+	SelectorWorker() throws IOException {
+		selector = Selector.open();
+	}
+
+	void register(SocketChannel channel) {
+		execute(() -> {
+			try {
+				SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+				key.attach(new NioConnection(this, channel, key));
+			} catch (IOException e) {
+				logger.error("Register channel error", e);
+				closeChannel(channel);
+			}
+		});
+	}
+
+	/**
+	 * 在worker线程中执行task，连接状态只在worker线程中修改
+	 */
+	void execute(Runnable task) {
+		pendingTasks.add(task);
+		selector.wakeup();
+	}
+
+	@Override
+	public void run() {
+		while (!Thread.currentThread().isInterrupted()) {
+			try {
+				selector.select(IDLE_CHECK_INTERVAL);
+				runPendingTasks();
+				Iterator<SelectionKey> ite = selector.selectedKeys().iterator();
+				while (ite.hasNext()) {
+					SelectionKey key = ite.next();
+					ite.remove();
+					handleKey(key);
+				}
+				closeIdleConnections();
+			} catch (ClosedSelectorException e) {
+				return;
+			} catch (IOException e) {
+				logger.error("Handle request error", e);
+			}
+		}
+	}
+
+	private void handleKey(SelectionKey key) {
+		NioConnection connection = (NioConnection) key.attachment();
+		try {
+			if (key.isValid() && key.isReadable()) {
+				connection.read(readBuffer);
+			}
+			if (key.isValid() && key.isWritable()) {
+				connection.flush();
+			}
+		} catch (HttpParseException e) {
+			logger.debug("Parse request error", e);
+			connection.close();
+		} catch (IOException e) {
+			logger.debug("Connection error", e);
+			connection.close();
+		}
+	}
+
+	private void runPendingTasks() {
+		Runnable task;
+		while ((task = pendingTasks.poll()) != null) {
+			task.run();
+		}
+	}
+
+	private void closeIdleConnections() {
+		long now = System.currentTimeMillis();
+		if (now - lastIdleCheckTime < IDLE_CHECK_INTERVAL) {
+			return;
+		}
+		lastIdleCheckTime = now;
+		for (SelectionKey key : selector.keys()) {
+			NioConnection connection = (NioConnection) key.attachment();
+			if (connection != null && key.isValid() && connection.isTimeout(now)) {
+				connection.close();
+			}
+		}
+	}
+
+	private void closeChannel(SocketChannel channel) {
+		try {
+			channel.close();
+		} catch (IOException e) {
+			logger.debug("Close channel error", e);
+		}
+	}
+
+}
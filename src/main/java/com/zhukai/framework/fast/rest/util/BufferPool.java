@@ -0,0 +1,46 @@
+package com.zhukai.framework.fast.rest.util;
+
+import com.zhukai.framework.fast.rest.Constants;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 响应写出用的直接缓冲池，缓冲大小固定为Constants.WRITE_BUFFER_SIZE
+ */
+public class BufferPool {
+	private static final int MAX_POOLED_BUFFERS = 256;
+
+	private static final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+	private static final AtomicInteger pooledCount = new AtomicInteger();
+
+	public static ByteBuffer acquire() {
+		ByteBuffer buffer = buffers.poll();
+		if (buffer == null) {
+			return ByteBuffer.allocateDirect(Constants.WRITE_BUFFER_SIZE);
+		}
+		pooledCount.decrementAndGet();
+		buffer.clear();
+		return buffer;
+	}
+
+	/**
+	 * 归还acquire得到的缓冲，归还后调用方不能再使用该缓冲。
+	 * 池不检查重复归还，缓冲在任一时刻只属于一个持有者，由持有者归还且只归还一次
+	 */
+	public static void release(ByteBuffer buffer) {
+		if (!buffer.isDirect() || buffer.capacity() != Constants.WRITE_BUFFER_SIZE) {
+			return;
+		}
+		if (pooledCount.incrementAndGet() > MAX_POOLED_BUFFERS) {
+			pooledCount.decrementAndGet();
+			return;
+		}
+		buffers.offer(buffer);
+	}
+
+	private BufferPool() {
+	}
+}
@@ -1,7 +1,13 @@
 package com.zhukai.framework.fast.rest.util;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.json.JSONObject;
 
@@ -15,6 +21,28 @@ public class JsonUtil {
 		return objectMapper.writeValueAsString(object);
 	}
 
+	/**
+	 * 把对象直接序列化到输出流，不生成中间的String，不关闭输出流
+	 */
+	public static void writeJson(Object object, OutputStream out, String charset) throws IOException {
+		if (object == null) {
+			return;
+		}
+		if (TypeUtil.isBasicType(object) || object.getClass().equals(JSONObject.class)) {
+			out.write(object.toString().getBytes(charset));
+			return;
+		}
+		JsonGenerator generator;
+		if (StandardCharsets.UTF_8.equals(Charset.forName(charset))) {
+			generator = objectMapper.getJsonFactory().createJsonGenerator(out, JsonEncoding.UTF8);
+		} else {
+			generator = objectMapper.getJsonFactory().createJsonGenerator(new OutputStreamWriter(out, charset));
+		}
+		generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		objectMapper.writeValue(generator, object);
+		generator.close();
+	}
+
 	public static <T> T convertObj(String json, Class<T> clazz) throws IOException {
 		if (JSONObject.class.equals(clazz)) {
 			return clazz.cast(new JSONObject(json));
@@ -2,24 +2,103 @@ package com.zhukai.framework.fast.rest.util;
 
 import com.zhukai.framework.fast.rest.exception.PackageRepeatException;
 
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
 import java.net.JarURLConnection;
 import java.net.URL;
 import java.net.URLDecoder;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
+import java.util.stream.Collectors;
 
 public class PackageUtil {
+	private static final int ACC_ANNOTATION = 0x2000;
+
+	@FunctionalInterface
+	private interface ClassFileSource {
+		InputStream open() throws IOException;
+	}
+
+	private static final class ClassFile {
+		private final String className;
+		private final ClassFileSource source;
+
+		private ClassFile(String className, ClassFileSource source) {
+			this.className = className;
+			this.source = source;
+		}
+	}
 
 	/**
 	 * 获取某个包下的所有类
 	 */
 	public static List<Class> getAllClasses(String packageName) throws Exception {
 		List<Class> classes = new ArrayList<>();
+		for (ClassFile classFile : findClassFiles(packageName)) {
+			classes.add(Thread.currentThread().getContextClassLoader().loadClass(classFile.className));
+		}
+		return classes;
+	}
+
+	/**
+	 * 获取某个包下被annotationClasses之一标记（包括注解上的注解）的类，注解类型本身除外。
+	 * 先并行读取class文件头中的类注解，只加载符合的类，加载时不初始化
+	 */
+	@SafeVarargs
+	public static List<Class<?>> getAnnotatedClasses(String packageName, Class<? extends Annotation>... annotationClasses) throws Exception {
+		ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+		Map<String, Boolean> matchedAnnotations = new ConcurrentHashMap<>();
+		List<ClassFile> classFiles = findClassFiles(packageName);
+		List<String> classNames = classFiles.parallelStream().filter(classFile -> {
+			List<String> annotationNames;
+			try (InputStream in = classFile.source.open()) {
+				annotationNames = readClassAnnotations(in);
+			} catch (IOException e) {
+				throw new IllegalStateException("Read class file " + classFile.className + " error", e);
+			}
+			for (String annotationName : annotationNames) {
+				if (matchedAnnotations.computeIfAbsent(annotationName, name -> isAnnotatedBy(name, classLoader, annotationClasses))) {
+					return true;
+				}
+			}
+			return false;
+		}).map(classFile -> classFile.className).collect(Collectors.toList());
+		List<Class<?>> classes = new ArrayList<>(classNames.size());
+		for (String className : classNames) {
+			classes.add(Class.forName(className, false, classLoader));
+		}
+		return classes;
+	}
+
+	@SafeVarargs
+	private static boolean isAnnotatedBy(String annotationName, ClassLoader classLoader, Class<? extends Annotation>... annotationClasses) {
+		Class<?> annotationType;
+		try {
+			annotationType = Class.forName(annotationName, false, classLoader);
+		} catch (ClassNotFoundException | LinkageError e) {
+			return false;
+		}
+		for (Class<? extends Annotation> annotationClass : annotationClasses) {
+			if (annotationType.equals(annotationClass) || ReflectUtil.existAnnotation(annotationType, annotationClass)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static List<ClassFile> findClassFiles(String packageName) throws Exception {
+		List<ClassFile> classFiles = new ArrayList<>();
 		String packageDirName = packageName.replace('.', '/');
 		Enumeration<URL> dirs = ClassLoader.getSystemClassLoader().getResources(packageDirName);
 		if (dirs.hasMoreElements()) {
@@ -30,19 +109,19 @@ public class PackageUtil {
 			String protocol = url.getProtocol();
 			if ("file".equals(protocol)) {
 				String filePath = URLDecoder.decode(url.getFile(), "utf-8");
-				findClassInPackageByFile(packageName, filePath, classes);
+				findClassInPackageByFile(packageName, filePath, classFiles);
 			} else if ("jar".equals(protocol)) {
 				try {
-					findClassInPackageByJar(packageDirName, url, classes);
+					findClassInPackageByJar(packageDirName, url, classFiles);
 				} catch (NoClassDefFoundError error) {
 					throw new PackageRepeatException(packageName + " is repeated, please change the package name");
 				}
 			}
 		}
-		return classes;
+		return classFiles;
 	}
 
-	private static void findClassInPackageByFile(String packageName, String filePath, List<Class> classes) throws Exception {
+	private static void findClassInPackageByFile(String packageName, String filePath, List<ClassFile> classFiles) {
 		File dir = new File(filePath);
 		if (!dir.exists() || !dir.isDirectory()) {
 			return;
@@ -51,16 +130,16 @@ public class PackageUtil {
 		if (dirFiles != null) {
 			for (File file : dirFiles) {
 				if (file.isDirectory()) {
-					findClassInPackageByFile(packageName + "." + file.getName(), file.getAbsolutePath(), classes);
+					findClassInPackageByFile(packageName + "." + file.getName(), file.getAbsolutePath(), classFiles);
 				} else {
 					String className = file.getName().substring(0, file.getName().length() - 6);
-					classes.add(Thread.currentThread().getContextClassLoader().loadClass(packageName + "." + className));
+					classFiles.add(new ClassFile(packageName + "." + className, () -> new FileInputStream(file)));
 				}
 			}
 		}
 	}
 
-	private static void findClassInPackageByJar(String packageDirName, URL url, List<Class> classes) throws IOException, ClassNotFoundException {
+	private static void findClassInPackageByJar(String packageDirName, URL url, List<ClassFile> classFiles) throws IOException {
 		JarFile jar = JarURLConnection.class.cast(url.openConnection()).getJarFile();
 		Enumeration<JarEntry> entries = jar.entries();
 		while (entries.hasMoreElements()) {
@@ -71,12 +150,142 @@ public class PackageUtil {
 				if (idx != -1) {
 					String packageName = name.substring(0, idx).replace('/', '.');
 					String className = name.substring(packageName.length() + 1, name.length() - 6);
-					classes.add(Thread.currentThread().getContextClassLoader().loadClass(packageName + '.' + className));
+					classFiles.add(new ClassFile(packageName + '.' + className, () -> jar.getInputStream(entry)));
 				}
 			}
 		}
 	}
 
+	/**
+	 * 按class文件格式跳过常量池以外的内容，读取类上RuntimeVisibleAnnotations中的注解类型
+	 *
+	 * @return 注解类型的类名，注解类型本身返回空列表
+	 */
+	private static List<String> readClassAnnotations(InputStream inputStream) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream));
+		if (in.readInt() != 0xCAFEBABE) {
+			throw new IOException("Not a class file");
+		}
+		skip(in, 4);
+		int constantCount = in.readUnsignedShort();
+		String[] utf8Constants = new String[constantCount];
+		for (int i = 1; i < constantCount; i++) {
+			int tag = in.readUnsignedByte();
+			switch (tag) {
+				case 1:// Utf8
+					utf8Constants[i] = in.readUTF();
+					break;
+				case 7:// Class
+				case 8:// String
+				case 16:// MethodType
+				case 19:// Module
+				case 20:// Package
+					skip(in, 2);
+					break;
+				case 15:// MethodHandle
+					skip(in, 3);
+					break;
+				case 3:// Integer
+				case 4:// Float
+				case 9:// Fieldref
+				case 10:// Methodref
+				case 11:// InterfaceMethodref
+				case 12:// NameAndType
+				case 17:// Dynamic
+				case 18:// InvokeDynamic
+					skip(in, 4);
+					break;
+				case 5:// Long
+				case 6:// Double
+					skip(in, 8);
+					i++;
+					break;
+				default:
+					throw new IOException("Unknown constant pool tag " + tag);
+			}
+		}
+		int accessFlags = in.readUnsignedShort();
+		if ((accessFlags & ACC_ANNOTATION) != 0) {
+			return Collections.emptyList();
+		}
+		skip(in, 4);
+		skip(in, in.readUnsignedShort() * 2);
+		skipMembers(in);
+		skipMembers(in);
+		int attributeCount = in.readUnsignedShort();
+		for (int i = 0; i < attributeCount; i++) {
+			String attributeName = utf8Constants[in.readUnsignedShort()];
+			int length = in.readInt();
+			if (!"RuntimeVisibleAnnotations".equals(attributeName)) {
+				skip(in, length);
+				continue;
+			}
+			int annotationCount = in.readUnsignedShort();
+			List<String> annotationNames = new ArrayList<>(annotationCount);
+			for (int j = 0; j < annotationCount; j++) {
+				String descriptor = utf8Constants[in.readUnsignedShort()];
+				annotationNames.add(descriptor.substring(1, descriptor.length() - 1).replace('/', '.'));
+				skipElementValuePairs(in);
+			}
+			return annotationNames;
+		}
+		return Collections.emptyList();
+	}
+
+	/** 跳过fields或methods */
+	private static void skipMembers(DataInputStream in) throws IOException {
+		int memberCount = in.readUnsignedShort();
+		for (int i = 0; i < memberCount; i++) {
+			skip(in, 6);
+			int attributeCount = in.readUnsignedShort();
+			for (int j = 0; j < attributeCount; j++) {
+				skip(in, 2);
+				skip(in, in.readInt());
+			}
+		}
+	}
+
+	private static void skipElementValuePairs(DataInputStream in) throws IOException {
+		int pairCount = in.readUnsignedShort();
+		for (int i = 0; i < pairCount; i++) {
+			skip(in, 2);
+			skipElementValue(in);
+		}
+	}
+
+	private static void skipElementValue(DataInputStream in) throws IOException {
+		int tag = in.readUnsignedByte();
+		switch (tag) {
+			case 'e':
+				skip(in, 4);
+				break;
+			case '@':
+				skip(in, 2);
+				skipElementValuePairs(in);
+				break;
+			case '[':
+				int valueCount = in.readUnsignedShort();
+				for (int i = 0; i < valueCount; i++) {
+					skipElementValue(in);
+				}
+				break;
+			default:
+				skip(in, 2);
+		}
+	}
+
+	/** skipBytes可能少跳，循环直到跳过n个字节 */
+	private static void skip(DataInputStream in, int n) throws IOException {
+		while (n > 0) {
+			int skipped = in.skipBytes(n);
+			if (skipped <= 0) {
+				in.readByte();
+				skipped = 1;
+			}
+			n -= skipped;
+		}
+	}
+
 	private PackageUtil() {
 	}
 }
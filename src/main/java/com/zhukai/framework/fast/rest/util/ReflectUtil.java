@@ -9,35 +9,127 @@ import java.lang.annotation.Annotation;
 import java.lang.annotation.Documented;
 import java.lang.annotation.Retention;
 import java.lang.annotation.Target;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ReflectUtil {
 	private static final Logger logger = LoggerFactory.getLogger(ReflectUtil.class);
 
-	public static Object getFieldValue(Object object, String fieldName) {
-		Field field = getDeclaredField(object.getClass(), fieldName);
-		field.setAccessible(true);
-		try {
-			return field.get(object);
-		} catch (IllegalAccessException e) {
-			logger.error("Reflect error", e);
-			return null;
+	private static final Map<Class<?>, Map<String, FieldAccessor>> fieldAccessors = new ConcurrentHashMap<>();
+
+	/**
+	 * 属性的读写器，Field只查找、setAccessible一次，读写通过预先生成的MethodHandle
+	 */
+	public static final class FieldAccessor {
+		private final Field field;
+		private final MethodHandle getter;
+		private final MethodHandle setter;// static final属性没有setter，用Field赋值
+
+		private FieldAccessor(Field field) {
+			field.setAccessible(true);
+			this.field = field;
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			try {
+				this.getter = adapt(lookup.unreflectGetter(field), MethodType.methodType(Object.class, Object.class));
+			} catch (IllegalAccessException e) {
+				throw new IllegalStateException("Reflect error: " + field, e);
+			}
+			MethodHandle handle;
+			try {
+				handle = adapt(lookup.unreflectSetter(field), MethodType.methodType(void.class, Object.class, Object.class));
+			} catch (IllegalAccessException e) {
+				handle = null;
+			}
+			this.setter = handle;
+		}
+
+		/**
+		 * 统一成(Object)Object和(Object, Object)void，static属性忽略第一个参数
+		 */
+		private MethodHandle adapt(MethodHandle handle, MethodType type) {
+			if (Modifier.isStatic(field.getModifiers())) {
+				handle = MethodHandles.dropArguments(handle, 0, Object.class);
+			}
+			return handle.asType(type);
+		}
+
+		public Field getField() {
+			return field;
+		}
+
+		public Object get(Object object) {
+			try {
+				return (Object) getter.invokeExact(object);
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new IllegalStateException("Reflect error: " + field, e);
+			}
+		}
+
+		public void set(Object object, Object value) {
+			try {
+				if (setter == null) {
+					field.set(object, value);
+				} else {
+					setter.invokeExact(object, value);
+				}
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new IllegalStateException("Reflect error: " + field, e);
+			}
+		}
+	}
+
+	/**
+	 * 按(类, 属性名)缓存的读写器，属性也可以是private或父类继承的
+	 *
+	 * @return 属性不存在时返回null
+	 */
+	public static FieldAccessor getFieldAccessor(Class<?> objectClass, String fieldName) {
+		Map<String, FieldAccessor> accessors = fieldAccessors.computeIfAbsent(objectClass, k -> new ConcurrentHashMap<>());
+		FieldAccessor accessor = accessors.get(fieldName);
+		if (accessor == null) {
+			Field field = getDeclaredField(objectClass, fieldName);
+			if (field == null) {
+				return null;
+			}
+			accessor = getFieldAccessor(field);
+			accessors.putIfAbsent(fieldName, accessor);
 		}
+		return accessor;
+	}
+
+	public static FieldAccessor getFieldAccessor(Field field) {
+		Map<String, FieldAccessor> accessors = fieldAccessors.computeIfAbsent(field.getDeclaringClass(), k -> new ConcurrentHashMap<>());
+		return accessors.computeIfAbsent(field.getName(), k -> new FieldAccessor(field));
+	}
+
+	public static Object getFieldValue(Object object, String fieldName) {
+		return getRequiredAccessor(object.getClass(), fieldName).get(object);
 	}
 
 	public static void setFieldValue(Object obj, String fieldName, Object value) {
-		Field field = getDeclaredField(obj.getClass(), fieldName);
-		field.setAccessible(true);
-		try {
-			field.set(obj, value);
-		} catch (IllegalAccessException e) {
-			logger.error("Reflect error", e);
+		getRequiredAccessor(obj.getClass(), fieldName).set(obj, value);
+	}
+
+	private static FieldAccessor getRequiredAccessor(Class<?> objectClass, String fieldName) {
+		FieldAccessor accessor = getFieldAccessor(objectClass, fieldName);
+		if (accessor == null) {
+			throw new IllegalArgumentException("Field " + fieldName + " is not exists in " + objectClass.getName());
 		}
+		return accessor;
 	}
 
 	/**
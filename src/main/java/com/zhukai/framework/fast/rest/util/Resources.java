@@ -5,7 +5,10 @@ import com.zhukai.framework.fast.rest.FastRestApplication;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
 
 public class Resources {
 	private static final boolean RUN_JAR = FastRestApplication.getRunClass().getResource(FastRestApplication.getRunClass().getSimpleName() + ".class").toString().startsWith("jar");
@@ -18,6 +21,35 @@ public class Resources {
 		return inputStream;
 	}
 
+	/**
+	 * 项目资源在文件系统中时返回File，打成jar包运行时返回InputStream
+	 */
+	public static Object getFileOrStreamByProject(String filePath) throws FileNotFoundException {
+		if (RUN_JAR) {
+			return getResourceAsStreamByProject(filePath);
+		}
+		File file = getResource(System.getenv("PWD") + "/src/main/resources" + filePath);
+		if (!file.isFile()) {
+			throw new FileNotFoundException(filePath);
+		}
+		return file;
+	}
+
+	/**
+	 * classpath资源在文件系统中时返回File，在jar包中时返回InputStream，不存在时返回null
+	 */
+	public static Object getFileOrStreamByClasspath(String filePath) {
+		URL url = FastRestApplication.class.getResource(filePath);
+		if (url == null) {
+			return null;
+		}
+		try {
+			return "file".equals(url.getProtocol()) ? new File(url.toURI()) : url.openStream();
+		} catch (IOException | URISyntaxException e) {
+			return null;
+		}
+	}
+
 	public static File getResource(String filePath) throws FileNotFoundException {
 		File file = new File(filePath);
 		if (!file.exists()) {
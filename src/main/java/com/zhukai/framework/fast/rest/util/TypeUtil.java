@@ -1,11 +1,26 @@
 package com.zhukai.framework.fast.rest.util;
 
-import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
 
 import org.apache.commons.lang3.StringUtils;
 
 public class TypeUtil {
 
+	/** 基本类型的转换函数，代替每次反射查找parseXxx */
+	private static final Map<Class<?>, Function<String, ?>> PARSERS = new HashMap<>();
+
+	static {
+		PARSERS.put(Integer.class, Integer::valueOf);
+		PARSERS.put(Float.class, Float::valueOf);
+		PARSERS.put(Double.class, Double::valueOf);
+		PARSERS.put(Byte.class, Byte::valueOf);
+		PARSERS.put(Long.class, Long::valueOf);
+		PARSERS.put(Short.class, Short::valueOf);
+		PARSERS.put(Boolean.class, Boolean::valueOf);
+	}
+
 	/**
 	 * @param preValue
 	 *            待转换值
@@ -19,11 +34,10 @@ public class TypeUtil {
 		}
 		if (convertTo.equals(String.class)) {
 			return convertTo.cast(preValue.toString());
-		} else if (isBasicType(convertTo)) {
-			String simpleName = convertTo.getSimpleName();
-			simpleName = simpleName.equals("Integer") ? "Int" : simpleName;
-			Method method = convertTo.getMethod("parse" + simpleName, String.class);
-			return convertTo.cast(method.invoke(null, preValue.toString()));
+		}
+		Function<String, ?> parser = PARSERS.get(convertTo);
+		if (parser != null) {
+			return convertTo.cast(parser.apply(preValue.toString()));
 		}
 		return convertTo.cast(preValue);
 	}
@@ -33,8 +47,7 @@ public class TypeUtil {
 	}
 
 	public static boolean isBasicType(Class clazz) {
-		return Integer.class.equals(clazz) || Float.class.equals(clazz) || Double.class.equals(clazz) || Byte.class.equals(clazz) || Long.class.equals(clazz) || Short.class.equals(clazz) || Boolean.class.equals(clazz)
-				|| String.class.equals(clazz);
+		return String.class.equals(clazz) || PARSERS.containsKey(clazz);
 	}
 
 	private TypeUtil() {
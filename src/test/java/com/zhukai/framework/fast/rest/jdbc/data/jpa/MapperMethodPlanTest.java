@@ -0,0 +1,138 @@
+package com.zhukai.framework.fast.rest.jdbc.data.jpa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.zhukai.framework.fast.rest.annotation.jpa.Column;
+import com.zhukai.framework.fast.rest.annotation.jpa.Entity;
+import com.zhukai.framework.fast.rest.annotation.jpa.GeneratedValue;
+import com.zhukai.framework.fast.rest.annotation.jpa.Id;
+
+public class MapperMethodPlanTest {
+	private static Connection conn;
+
+	@Entity(name = "owner")
+	public static class Owner {
+		@Id
+		@GeneratedValue
+		private Integer id;
+		private String name;
+
+		public Integer getId() {
+			return id;
+		}
+
+		public void setId(Integer id) {
+			this.id = id;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+	}
+
+	@Entity(name = "pet")
+	public static class Pet {
+		@Id
+		@GeneratedValue
+		private Integer id;
+		private String name;
+		@Column(name = "owner_id")
+		private Owner owner;
+
+		public Integer getId() {
+			return id;
+		}
+
+		public void setId(Integer id) {
+			this.id = id;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public Owner getOwner() {
+			return owner;
+		}
+
+		public void setOwner(Owner owner) {
+			this.owner = owner;
+		}
+	}
+
+	interface PetRepository {
+		List<Pet> findByName(String name);
+
+		Pet findByIdAndName(Integer id, String name);
+	}
+
+	@BeforeClass
+	public static void createTables() throws Exception {
+		conn = DriverManager.getConnection("jdbc:h2:mem:plan;MODE=MySQL;DATABASE_TO_LOWER=TRUE");
+		try (Statement statement = conn.createStatement()) {
+			statement.executeUpdate("CREATE TABLE owner(id INTEGER PRIMARY KEY, name VARCHAR(64))");
+			statement.executeUpdate("CREATE TABLE pet(id INTEGER PRIMARY KEY, name VARCHAR(64), owner_id INTEGER)");
+			statement.executeUpdate("INSERT INTO owner VALUES (1, 'tom'), (2, 'kitty')");
+			statement.executeUpdate("INSERT INTO pet VALUES (2, 'kitty', 1), (3, 'tom', 2)");
+		}
+	}
+
+	@AfterClass
+	public static void closeConnection() throws Exception {
+		conn.close();
+	}
+
+	@Test
+	public void findByQualifiesJoinedColumns() throws Exception {
+		MapperMethodPlan plan = MapperMethodPlan.compile(PetRepository.class.getMethod("findByName", String.class), Pet.class);
+		assertTrue(plan.getSql(), plan.getSql().contains("pet.name=?"));
+		List<Pet> pets = query(plan.getSql(), "kitty");
+		assertEquals(1, pets.size());
+		assertEquals(Integer.valueOf(2), pets.get(0).getId());
+		assertEquals("tom", pets.get(0).getOwner().getName());
+	}
+
+	@Test
+	public void findByMultipleSharedColumns() throws Exception {
+		MapperMethodPlan plan = MapperMethodPlan.compile(PetRepository.class.getMethod("findByIdAndName", Integer.class, String.class), Pet.class);
+		List<Pet> pets = query(plan.getSql(), 3, "tom");
+		assertEquals(1, pets.size());
+		assertEquals("kitty", pets.get(0).getOwner().getName());
+	}
+
+	private static List<Pet> query(String sql, Object... parameters) throws Exception {
+		List<Pet> pets = new ArrayList<>();
+		try (PreparedStatement statement = conn.prepareStatement(sql)) {
+			for (int i = 0; i < parameters.length; i++) {
+				statement.setObject(i + 1, parameters[i]);
+			}
+			try (ResultSet resultSet = statement.executeQuery()) {
+				while (resultSet.next()) {
+					pets.add(JpaUtil.convertToEntity(Pet.class, resultSet));
+				}
+			}
+		}
+		return pets;
+	}
+}